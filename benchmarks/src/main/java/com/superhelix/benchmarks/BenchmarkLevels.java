@@ -0,0 +1,26 @@
+package com.superhelix.benchmarks;
+
+import com.superhelix.Level;
+import com.superhelix.LevelParserException;
+import com.superhelix.LevelUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+/// Locates the bundled levels, which are read from ../levels unless the bloxorz.levels property says otherwise.
+final class BenchmarkLevels {
+    private BenchmarkLevels() { }
+
+    static String levelFile(String number) {
+        return new File(System.getProperty("bloxorz.levels", "../levels"), "level%s.txt".formatted(number)).getPath();
+    }
+
+    static String infoFile(String number) {
+        File info = new File(System.getProperty("bloxorz.levels", "../levels"), "level%s.info".formatted(number));
+        return info.isFile() ? info.getPath() : null;
+    }
+
+    static Level load(String number) throws FileNotFoundException, LevelParserException {
+        return LevelUtils.loadFromFile(levelFile(number), infoFile(number));
+    }
+}
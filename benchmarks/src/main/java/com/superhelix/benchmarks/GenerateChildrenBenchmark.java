@@ -0,0 +1,60 @@
+package com.superhelix.benchmarks;
+
+import com.superhelix.*;
+import com.superhelix.Level;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/// Expands a batch of states taken from the middle of a level's search with StateNode.generateChildren.
+/// The batch is the breadth-first layer halfway to the goal, so it has a realistic mix of orientations and bridge
+/// states rather than just the start.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateChildrenBenchmark {
+    private static final int MAX_STATES = 256;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18", "19", "20", "21", "22", "23", "24", "25", "26", "27", "28", "29", "30", "31", "32", "33"})
+    public String level;
+
+    private MoveGenerator generator;
+    private StateNode[] states;
+
+    @Setup
+    public void setup() throws FileNotFoundException, LevelParserException {
+        Level parsed = BenchmarkLevels.load(level);
+        CompiledLevel compiled = new CompiledLevel(parsed);
+        generator = new MoveGenerator(compiled);
+        int depth = StateGraph.generateMinimalMovePattern(parsed).size() / 2;
+
+        List<StateNode> layer = List.of(new StateNode(compiled.getStartKey(), null, null));
+        LongHashSet visited = new LongHashSet();
+        visited.add(layer.get(0).getKey());
+        for (int i = 0; i < depth; ++i) {
+            List<StateNode> next = new ArrayList<>();
+            for (StateNode node : layer)
+                for (StateNode child : node.generateChildren(generator))
+                    if (visited.add(child.getKey()))
+                        next.add(child);
+            layer = next;
+        }
+        states = layer.subList(0, Math.min(MAX_STATES, layer.size())).toArray(new StateNode[0]);
+    }
+
+    /**
+     * Expands every state of the batch, so the score is for the whole batch
+     */
+    @Benchmark
+    public void generateChildren(Blackhole blackhole) {
+        for (StateNode state : states)
+            blackhole.consume(state.generateChildren(generator));
+    }
+}
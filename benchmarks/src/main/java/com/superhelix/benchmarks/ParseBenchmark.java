@@ -0,0 +1,34 @@
+package com.superhelix.benchmarks;
+
+import com.superhelix.Level;
+import com.superhelix.LevelParserException;
+import com.superhelix.LevelUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/// Parses a level's tile matrix and info file with LevelUtils.loadFromFile.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18", "19", "20", "21", "22", "23", "24", "25", "26", "27", "28", "29", "30", "31", "32", "33"})
+    public String level;
+
+    private String levelFile, infoFile;
+
+    @Setup
+    public void setup() {
+        levelFile = BenchmarkLevels.levelFile(level);
+        infoFile = BenchmarkLevels.infoFile(level);
+    }
+
+    @Benchmark
+    public Level loadFromFile() throws FileNotFoundException, LevelParserException {
+        return LevelUtils.loadFromFile(levelFile, infoFile);
+    }
+}
@@ -0,0 +1,34 @@
+package com.superhelix.benchmarks;
+
+import com.superhelix.Level;
+import com.superhelix.LevelParserException;
+import com.superhelix.StateGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/// Solves a level end to end with StateGraph.generateMinimalMovePattern, starting from an already parsed Level.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolveBenchmark {
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18", "19", "20", "21", "22", "23", "24", "25", "26", "27", "28", "29", "30", "31", "32", "33"})
+    public String level;
+
+    private Level parsed;
+
+    @Setup
+    public void setup() throws FileNotFoundException, LevelParserException {
+        parsed = BenchmarkLevels.load(level);
+    }
+
+    @Benchmark
+    public List<String> generateMinimalMovePattern() {
+        return StateGraph.generateMinimalMovePattern(parsed);
+    }
+}
@@ -0,0 +1,135 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// A* search over the same states as StateGraph. States are expanded in order of moves taken plus the
+/// DistanceHeuristic estimate of moves left, so states leading away from the goal are put off or never expanded.
+public class AStarSearch {
+    private record Entry(int node, int cost, int estimate, long order) { }
+
+    /// Lowest estimate first, then deepest first so ties head for the goal, then oldest first to stay deterministic
+    private static final Comparator<Entry> PRIORITY = Comparator.comparingInt(Entry::estimate)
+            .thenComparing(Comparator.comparingInt(Entry::cost).reversed())
+            .thenComparingLong(Entry::order);
+
+    /// An open entry with its object header, plus its slot in the priority queue
+    private static final int ENTRY_BYTES = 40;
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level) {
+        return generateMinimalMovePattern(level, new SearchStats());
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, SearchStats stats) {
+        return solve(level, stats, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Searches for a minimal player move pattern within a budget
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public static SolveResult solve(Level level, SearchStats stats, SolveBudget budget) {
+        long startTime = System.nanoTime();
+        BudgetTracker tracker = new BudgetTracker(budget, startTime);
+        CompiledLevel compiled = new CompiledLevel(level);
+        DeadStateAnalysis deadStates = new DeadStateAnalysis(compiled);
+        stats.setLevelAnalysis(compiled, deadStates);
+        DistanceHeuristic heuristic = deadStates.getDistances();
+        MoveGenerator generator = new MoveGenerator(compiled);
+
+        PriorityQueue<Entry> open = new PriorityQueue<>(PRIORITY);
+        LongIntHashMap bestCosts = new LongIntHashMap(1024, Integer.MAX_VALUE);
+        LongHashSet closed = new LongHashSet();
+        long order = 0;
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+
+        // Every state put on the open list, with the state it was reached from and how
+        long[] keys = new long[1024];
+        int[] parents = new int[1024];
+        byte[] moves = new byte[1024];
+        int count = 0;
+
+        long startKey = compiled.getStartKey();
+        int startEstimate = heuristic.estimate(startKey);
+        if (startEstimate == DistanceHeuristic.UNREACHABLE)
+            return new SolveResult(SolveResult.Status.NO_SOLUTION, new ArrayList<>());
+        keys[count] = startKey;
+        parents[count] = -1;
+        bestCosts.put(startKey, 0);
+        open.add(new Entry(count++, 0, startEstimate, order++));
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+        long expanded = 0;
+
+        while (!open.isEmpty()) {
+            SolveResult.Status limit = tracker.check(expanded + 1, bestCosts.footprintBytes()
+                    + closed.footprintBytes() + (long) count * StateGraph.NODE_BYTES
+                    + (long) open.size() * ENTRY_BYTES, open.peek().cost(), open.size());
+            if (limit != null) {
+                status = limit;
+                break;
+            }
+            Entry entry = open.remove();
+            int node = entry.node();
+            long key = keys[node];
+            // The heuristic is consistent, so the first expansion of a state is always along a shortest path
+            if (!closed.add(key)) {
+                stats.addDuplicates(1);
+                continue;
+            }
+
+            if (compiled.isGoal(key)) {
+                stats.setVisitedSize(bestCosts.size());
+                stats.setSearchNanos(System.nanoTime() - startTime);
+                return new SolveResult(SolveResult.Status.SOLVED,
+                        StateGraph.reconstructMovePattern(node, parents, moves, stats));
+            }
+
+            int childCount = generator.expand(key, childKeys, childMoves);
+            ++expanded;
+            stats.addExpanded();
+            stats.addGenerated(childCount);
+
+            int childCost = entry.cost() + 1;
+            for (int c = 0; c < childCount; ++c) {
+                long childKey = childKeys[c];
+                if (closed.contains(childKey) || bestCosts.get(childKey) <= childCost) {
+                    stats.addDuplicates(1);
+                    continue;
+                }
+                int estimate = heuristic.estimate(childKey);
+                // The goal can't be reached from here even with every bridge on
+                if (estimate == DistanceHeuristic.UNREACHABLE)
+                    continue;
+                bestCosts.put(childKey, childCost);
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                    parents = Arrays.copyOf(parents, count * 2);
+                    moves = Arrays.copyOf(moves, count * 2);
+                }
+                keys[count] = childKey;
+                parents[count] = node;
+                moves[count] = childMoves[c];
+                open.add(new Entry(count++, childCost, childCost + estimate, order++));
+            }
+            stats.updatePeakQueueSize(open.size());
+        }
+        stats.setVisitedSize(bestCosts.size());
+        stats.setSearchNanos(System.nanoTime() - startTime);
+
+        return new SolveResult(status, new ArrayList<>());
+    }
+}
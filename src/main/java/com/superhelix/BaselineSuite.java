@@ -0,0 +1,247 @@
+package com.superhelix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/// Records how much work StateGraph does on every level of a few directories, and checks later runs against that
+/// record. By default those are the bundled levels and levels/large, which holds generated levels large enough that
+/// work growing out of hand with the size of a level (such as analysing it before the search) makes the check fail.
+/// Each level's solution length, states expanded and peak queue size come from one solve, since breadth-first search
+/// always does the same work, and its time is the median of several solves after every level has been solved once and
+/// the level itself a few more times.
+/// A check fails when any solution length changes or either counter grows by more than the work tolerance. The
+/// counters don't depend on the machine, so times are only checked when a time tolerance is given, and then a
+/// millisecond of slack on top of it keeps the shortest solves from failing on noise.
+///
+/// The baseline is a tab-separated text file with one line per level, so changes to it read well in a diff.
+public class BaselineSuite {
+    private static final String USAGE = """
+            usage: BaselineSuite [options] [baseline_file]
+              --record            measure and write the baseline instead of checking against it
+              --levels dir        directory of levels to measure, which may be given more than once
+                                  (default levels and levels/large)
+              --runs n            timed solves per level (default 5)
+              --warmup n          untimed solves per level before those (default 2)
+              --work-tolerance p  percent the counters may grow by (default 0)
+              --time-tolerance p  percent the median time may grow by (default: times aren't checked)""";
+    private static final String DEFAULT_BASELINE = "baseline.tsv";
+    private static final List<String> DEFAULT_LEVELS = List.of("levels", "levels/large");
+    private static final String HEADER = "# level\tmoves\texpanded\tpeak_queue\tmedian_micros";
+    /// Timings of very short solves are mostly noise, so this much growth is always allowed
+    private static final long TIME_SLACK_NANOS = 1_000_000;
+
+    /**
+     * The work done solving one level
+     * @param name The level's path
+     * @param moves The solution's length, or 0 if it has none
+     * @param expanded How many states were expanded
+     * @param peakQueue The most states that were waiting at once
+     * @param medianNanos The median time of the timed solves
+     */
+    public record Measurement(String name, int moves, long expanded, long peakQueue, long medianNanos) { }
+
+    /**
+     * Solves every level of a directory and measures it
+     * @param directory The directory containing the levels
+     * @param warmup Untimed solves per level
+     * @param runs Timed solves per level
+     * @param progress Where each level's measurement is printed as it's done
+     * @return The measurements, in level order
+     * @throws IOException If the directory can't be listed
+     * @throws LevelParserException If a level can't be parsed
+     */
+    public static List<Measurement> measure(File directory, int warmup, int runs, PrintStream progress)
+            throws IOException, LevelParserException {
+        // Every level is solved once before any is timed, so the first levels aren't timed while the JIT is still busy
+        List<File> levelFiles = BatchSolver.findLevels(directory);
+        List<Level> levels = new ArrayList<>();
+        List<SearchStats> stats = new ArrayList<>();
+        List<Integer> moves = new ArrayList<>();
+        for (File levelFile : levelFiles) {
+            Level level = LevelUtils.loadFromFile(levelFile.getPath(), BatchSolver.findInfoFile(levelFile));
+            SearchStats levelStats = new SearchStats();
+            moves.add(StateGraph.generateMinimalMovePattern(level, levelStats).size());
+            levels.add(level);
+            stats.add(levelStats);
+        }
+
+        List<Measurement> measurements = new ArrayList<>();
+        for (int l = 0; l < levels.size(); ++l) {
+            for (int i = 0; i < warmup; ++i)
+                StateGraph.generateMinimalMovePattern(levels.get(l), new SearchStats());
+            long[] times = new long[runs];
+            for (int i = 0; i < runs; ++i) {
+                long start = System.nanoTime();
+                StateGraph.generateMinimalMovePattern(levels.get(l), new SearchStats());
+                times[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(times);
+            Measurement measurement = new Measurement(levelFiles.get(l).getPath(), moves.get(l),
+                    stats.get(l).getNodesExpanded(), stats.get(l).getPeakQueueSize(), times[runs / 2]);
+            measurements.add(measurement);
+            progress.printf("%-24s %4d moves %9d expanded %8d peak %10.3f ms\n", measurement.name(),
+                    measurement.moves(), measurement.expanded(), measurement.peakQueue(),
+                    measurement.medianNanos() / 1e6);
+        }
+        return measurements;
+    }
+
+    /**
+     * Writes a baseline file
+     * @param measurements The measurements
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public static void write(List<Measurement> measurements, Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (Measurement m : measurements)
+            lines.add("%s\t%d\t%d\t%d\t%d".formatted(m.name(), m.moves(), m.expanded(), m.peakQueue(),
+                    m.medianNanos() / 1000));
+        Files.write(file, lines);
+    }
+
+    /**
+     * Reads a baseline file written by write
+     * @param file The file
+     * @return The measurements, in the order of the file
+     * @throws IOException If the file can't be read, or a line isn't a measurement
+     */
+    public static List<Measurement> read(Path file) throws IOException {
+        List<Measurement> measurements = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file);
+        for (int lineNumber = 1; lineNumber <= lines.size(); ++lineNumber) {
+            String line = lines.get(lineNumber - 1);
+            if (line.isBlank() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split("\t");
+            try {
+                if (fields.length != 5)
+                    throw new NumberFormatException();
+                measurements.add(new Measurement(fields[0], Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+                        Long.parseLong(fields[3]), Long.parseLong(fields[4]) * 1000));
+            } catch (NumberFormatException e) {
+                throw new IOException("%s:%d: not a measurement: '%s'".formatted(file, lineNumber, line));
+            }
+        }
+        return measurements;
+    }
+
+    /**
+     * Compares new measurements with a baseline, printing every regression
+     * @param baseline The recorded measurements
+     * @param current The new measurements
+     * @param workTolerance The fraction the counters may grow by
+     * @param timeTolerance The fraction the median time may grow by, or a negative number to not check times
+     * @param out Where regressions and the summary are printed
+     * @return How many levels regressed, including levels missing from either side
+     */
+    public static int compare(List<Measurement> baseline, List<Measurement> current, double workTolerance,
+                              double timeTolerance, PrintStream out) {
+        Map<String, Measurement> recorded = new LinkedHashMap<>();
+        for (Measurement m : baseline)
+            recorded.put(m.name(), m);
+        int failed = 0;
+        long baselineExpanded = 0, currentExpanded = 0;
+        for (Measurement now : current) {
+            Measurement before = recorded.remove(now.name());
+            if (before == null) {
+                ++failed;
+                out.printf("FAILED %s: not in the baseline\n", now.name());
+                continue;
+            }
+            baselineExpanded += before.expanded();
+            currentExpanded += now.expanded();
+            List<String> problems = new ArrayList<>();
+            if (now.moves() != before.moves())
+                problems.add("solution length %d -> %d".formatted(before.moves(), now.moves()));
+            if (now.expanded() > before.expanded() * (1 + workTolerance))
+                problems.add("states expanded %d -> %d".formatted(before.expanded(), now.expanded()));
+            if (now.peakQueue() > before.peakQueue() * (1 + workTolerance))
+                problems.add("peak queue %d -> %d".formatted(before.peakQueue(), now.peakQueue()));
+            if (timeTolerance >= 0 && now.medianNanos() > before.medianNanos() * (1 + timeTolerance) + TIME_SLACK_NANOS)
+                problems.add("median time %.3f -> %.3f ms".formatted(before.medianNanos() / 1e6,
+                        now.medianNanos() / 1e6));
+            if (!problems.isEmpty()) {
+                ++failed;
+                out.printf("FAILED %s: %s\n", now.name(), String.join(", ", problems));
+            }
+        }
+        for (String name : recorded.keySet()) {
+            ++failed;
+            out.printf("FAILED %s: in the baseline but wasn't measured\n", name);
+        }
+        out.printf("Checked %d levels against %d in the baseline: %d failed, %d states expanded in total (was %d)\n",
+                current.size(), baseline.size(), failed, currentExpanded, baselineExpanded);
+        return failed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean record = false;
+        List<String> levels = new ArrayList<>();
+        int runs = 5, warmup = 2;
+        double workTolerance = 0, timeTolerance = -1;
+        String baselineFile = DEFAULT_BASELINE;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                String arg = args[i];
+                if (arg.startsWith("--") && !arg.equals("--record") && i + 1 == args.length) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                switch (arg) {
+                    case "--record" -> record = true;
+                    case "--levels" -> levels.add(args[++i]);
+                    case "--runs" -> runs = Integer.parseInt(args[++i]);
+                    case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                    case "--work-tolerance" -> workTolerance = Double.parseDouble(args[++i]) / 100;
+                    case "--time-tolerance" -> {
+                        timeTolerance = Double.parseDouble(args[++i]) / 100;
+                        if (timeTolerance < 0)
+                            throw new IllegalArgumentException("the time tolerance can't be negative");
+                    }
+                    default -> baselineFile = arg;
+                }
+            }
+            if (runs < 1 || warmup < 0 || workTolerance < 0)
+                throw new IllegalArgumentException("runs must be positive, and the rest can't be negative");
+        } catch (IllegalArgumentException e) {
+            System.out.println("error: bad option value: " + e.getMessage());
+            System.exit(1);
+        }
+        if (levels.isEmpty())
+            levels = DEFAULT_LEVELS;
+
+        List<Measurement> baseline = null;
+        if (!record) {
+            try {
+                baseline = read(Path.of(baselineFile));
+            } catch (IOException e) {
+                System.out.println("error: can't read the baseline: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        List<Measurement> current = new ArrayList<>();
+        try {
+            for (String directory : levels)
+                current.addAll(measure(new File(directory), warmup, runs, System.out));
+        } catch (IOException | LevelParserException e) {
+            System.out.println("error: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        if (record) {
+            write(current, Path.of(baselineFile));
+            System.out.printf("Recorded %d levels in '%s'\n", current.size(), baselineFile);
+        } else if (compare(baseline, current, workTolerance, timeTolerance, System.out) > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.superhelix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Solves every level in a directory in one JVM, several levels at a time.
+/// Each levelN.txt is paired with levelN.info when there is one. Solutions are printed in level order in the format
+/// of solutions.txt as soon as every level before them is done, and a timing summary is printed at the end.
+public class BatchSolver {
+    private record Outcome(String text, long nanos) { }
+
+    private interface LevelSource {
+        Level load() throws IOException, LevelParserException;
+    }
+
+    /// A level to solve and the name to print it under
+    private record Entry(String name, LevelSource source) { }
+
+    /// Orders file names so that their numbers compare by value, putting level2 before level10
+    private static final Comparator<String> NATURAL_ORDER = Comparator
+            .comparing((String name) -> name.replaceAll("\\d+", ""))
+            .thenComparing(name -> {
+                String digits = name.replaceAll("\\D+", "");
+                return digits.isEmpty() ? BigInteger.ONE.negate() : new BigInteger(digits);
+            })
+            .thenComparing(Comparator.naturalOrder());
+
+    /**
+     * Lists the level files of a directory in level order
+     * @param directory The directory to scan
+     * @return The .txt files in the directory
+     * @throws IOException If the directory can't be listed
+     */
+    public static List<File> findLevels(File directory) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".txt"));
+        if (files == null)
+            throw new IOException("Can't list the directory '%s'".formatted(directory));
+        List<File> levels = new ArrayList<>(Arrays.asList(files));
+        levels.sort((a, b) -> NATURAL_ORDER.compare(a.getName(), b.getName()));
+        return levels;
+    }
+
+    /**
+     * @param levelFile A level's .txt file
+     * @return The path of the matching .info file, or null if there isn't one
+     */
+    public static String findInfoFile(File levelFile) {
+        String name = levelFile.getName();
+        File infoFile = new File(levelFile.getParentFile(), name.substring(0, name.length() - 4) + ".info");
+        return infoFile.isFile() ? infoFile.getPath() : null;
+    }
+
+    /**
+     * Solves every level of a directory
+     * @param directory The directory containing the levels
+     * @param engine The engine to solve each level with
+     * @param jobs How many levels to solve at the same time
+     * @param cache The cache to look solutions up in and add them to, or null to always solve
+     * @param out Where the solutions are printed
+     * @param summary Where the timing summary is printed
+     * @throws IOException If the directory can't be listed
+     */
+    public static void solveDirectory(File directory, SearchEngine engine, int jobs, SolutionCache cache,
+                                      PrintStream out, PrintStream summary) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (File levelFile : findLevels(directory))
+            entries.add(new Entry(levelFile.getPath(),
+                    () -> LevelUtils.loadFromFile(levelFile.getPath(), findInfoFile(levelFile))));
+        solveAll(entries, engine, jobs, cache, out, summary);
+    }
+
+    /**
+     * Solves every level of a bundle, printing each under the name it was packed with
+     * @param bundle The bundle
+     * @param engine The engine to solve each level with
+     * @param jobs How many levels to solve at the same time
+     * @param cache The cache to look solutions up in and add them to, or null to always solve
+     * @param out Where the solutions are printed
+     * @param summary Where the timing summary is printed
+     */
+    public static void solveBundle(LevelBundle bundle, SearchEngine engine, int jobs, SolutionCache cache,
+                                   PrintStream out, PrintStream summary) {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < bundle.size(); ++i) {
+            int index = i;
+            entries.add(new Entry(bundle.getName(i), () -> bundle.load(index)));
+        }
+        solveAll(entries, engine, jobs, cache, out, summary);
+    }
+
+    /**
+     * Packs every level of a directory into one bundle, named by their paths so solving the bundle prints the same
+     * as solving the directory
+     * @param directory The directory containing the levels
+     * @param bundleFile The bundle to write
+     * @return How many levels were packed
+     * @throws IOException If the directory can't be listed or the bundle can't be written
+     * @throws LevelParserException If a level is invalid
+     */
+    public static int packDirectory(File directory, Path bundleFile) throws IOException, LevelParserException {
+        LinkedHashMap<String, Level> levels = new LinkedHashMap<>();
+        for (File levelFile : findLevels(directory))
+            levels.put(levelFile.getPath(), LevelUtils.loadFromFile(levelFile.getPath(), findInfoFile(levelFile)));
+        LevelFormat.writeBundle(levels, bundleFile);
+        return levels.size();
+    }
+
+    private static void solveAll(List<Entry> levels, SearchEngine engine, int jobs, SolutionCache cache,
+                                 PrintStream out, PrintStream summary) {
+        long startTime = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<Outcome>> outcomes = new ArrayList<>();
+            for (Entry entry : levels)
+                outcomes.add(executor.submit(() -> solve(entry, engine, cache)));
+
+            long[] times = new long[levels.size()];
+            for (int i = 0; i < levels.size(); ++i) {
+                Outcome outcome;
+                try {
+                    outcome = outcomes.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    outcome = new Outcome("error: %s: %s\n".formatted(levels.get(i).name(), e.getCause()), 0);
+                }
+                out.print(outcome.text());
+                out.flush();
+                times[i] = outcome.nanos();
+            }
+
+            long wallTime = System.nanoTime() - startTime;
+            long totalTime = 0;
+            summary.println("Level timings:");
+            for (int i = 0; i < levels.size(); ++i) {
+                summary.printf("%10.2f ms  %s\n", times[i] / 1e6, levels.get(i).name());
+                totalTime += times[i];
+            }
+            summary.printf("Solved %d levels with %d jobs in %.2f ms of wall time (%.2f ms summed over levels)\n",
+                    levels.size(), jobs, wallTime / 1e6, totalTime / 1e6);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Outcome solve(Entry entry, SearchEngine engine, SolutionCache cache) {
+        long startTime = System.nanoTime();
+        String text;
+        try {
+            Level level = entry.source().load();
+            List<String> moves = (cache != null) ? cache.get(level, engine) : null;
+            if (moves == null) {
+                moves = engine.solve(level, new SearchStats());
+                if (cache != null)
+                    cache.put(level, engine, moves);
+            }
+            if (moves.size() > 0)
+                text = "Here's the solution to: %s\n%s".formatted(entry.name(), Main.formatMovePattern(moves));
+            else
+                text = "Sorry, I can't find a solution to %s.\n".formatted(entry.name());
+        } catch (IOException | LevelParserException e) {
+            text = "error: %s: %s\n".formatted(entry.name(), e.getMessage());
+        }
+        return new Outcome(text, System.nanoTime() - startTime);
+    }
+}
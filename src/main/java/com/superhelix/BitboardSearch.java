@@ -0,0 +1,486 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// Breadth-first search that advances a whole layer at a time, for large open levels where most moves are plain rolls.
+/// Whole blocks are kept as bitboards over the cells, one per orientation for every bridge configuration that has
+/// been reached, with bit c set when a block of that orientation has its first cell on c. Rolling every block of a
+/// layer in one direction is then a shift of the bitboard by the roll's cell offset, masked by where a block of the
+/// new orientation stays on the level under those bridges and hasn't been before. Cells are numbered column by
+/// column, so those masks also keep blocks from wrapping between columns.
+///
+/// Landing on a switch can change the bridges or teleport the player, so placements that touch a switch are left out
+/// of the masks and landed one at a time through MoveGenerator instead, as are the split halves teleports leave
+/// behind. Dead placements (see DeadStateAnalysis) are left out of the masks too.
+///
+/// Every layer is kept, with only its nonzero words, to rebuild the path backwards from the goal: a parent is looked
+/// for among the placements that roll onto the state, and only if none of them is in the layer before (because the
+/// state was reached through a switch or by a split half) is that whole layer expanded to find it.
+public class BitboardSearch {
+    private static final int ORIENTATIONS = 3;
+
+    /// The whole-block placements of one bridge configuration
+    private final class Board {
+        final long bridges;
+        /// Where a block of each orientation can land without falling or touching a switch
+        final long[][] open = new long[ORIENTATIONS][words];
+        final long[][] visited = new long[ORIENTATIONS][words];
+        long[][] frontier = new long[ORIENTATIONS][words];
+        long[][] next = new long[ORIENTATIONS][words];
+        // The words of each orientation that can be nonzero, as [low, high)
+        int[] frontierLow = new int[ORIENTATIONS], frontierHigh = new int[ORIENTATIONS];
+        int[] nextLow = new int[ORIENTATIONS], nextHigh = new int[ORIENTATIONS];
+        boolean touched;
+
+        Board(long bridges) {
+            this.bridges = bridges;
+            Arrays.fill(frontierLow, words);
+            Arrays.fill(nextLow, words);
+            for (int orientation = 0; orientation < ORIENTATIONS; ++orientation) {
+                System.arraycopy(alwaysOpen[orientation], 0, open[orientation], 0, words);
+                int span = generator.span(orientation);
+                for (int cell : sometimesOpen[orientation])
+                    if (generator.isSupported(cell, cell + span, false, bridges))
+                        open[orientation][cell >>> 6] |= 1L << cell;
+            }
+        }
+    }
+
+    /**
+     * One layer's states
+     * @param bridges The bridge configuration of every board
+     * @param indices The nonzero words of every board, by board and orientation, in ascending order
+     * @param words Those words
+     * @param splits The split players, sorted
+     */
+    private record Layer(long[] bridges, int[][][] indices, long[][][] words, long[] splits) { }
+
+    private final CompiledLevel compiled;
+    private final StateEncoder encoder;
+    private final MoveGenerator generator;
+    private final DeadStateAnalysis deadStates;
+    private final int cellCount;
+    private final int words;
+
+    /// Where a block lands on plain floor whatever the bridges are, by orientation
+    private final long[][] alwaysOpen = new long[ORIENTATIONS][];
+    /// Where a block only stays on the level under some bridges, by orientation
+    private final int[][] sometimesOpen = new int[ORIENTATIONS][];
+    /// Where a block touches a switch, by orientation
+    private final long[][] onSwitch = new long[ORIENTATIONS][];
+
+    private final List<Board> boards = new ArrayList<>();
+    private final LongIntHashMap boardIndices = new LongIntHashMap(16, -1);
+    private final LongHashSet visitedSplits = new LongHashSet();
+    private final List<Layer> layers = new ArrayList<>();
+
+    private final long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+    private final byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+    private long generated, duplicates, pruned, visitedCount;
+    /// How many bytes the kept layers take up
+    private long layerBytes;
+    /// The move from the parent findParent last returned
+    private byte parentMove;
+
+    private BitboardSearch(CompiledLevel compiled) {
+        this.compiled = compiled;
+        encoder = compiled.getEncoder();
+        deadStates = new DeadStateAnalysis(compiled);
+        generator = new MoveGenerator(compiled, deadStates);
+        cellCount = compiled.getCellCount();
+        words = (cellCount + 63) >>> 6;
+
+        int column = compiled.getHeight();
+        for (int orientation = 0; orientation < ORIENTATIONS; ++orientation) {
+            int span = generator.span(orientation);
+            alwaysOpen[orientation] = new long[words];
+            onSwitch[orientation] = new long[words];
+            int[] sometimes = new int[16];
+            int sometimesCount = 0;
+            // The same bounds as MoveGenerator's roll table, which keep the fall check inside the arrays
+            for (int cell = column; cell + span + column < cellCount; ++cell) {
+                int second = cell + span;
+                if (!generator.isSupported(cell, second, false, -1L))
+                    continue;
+                // A teleport sends the player away before it's ever in this placement, so only the landing is judged
+                if (compiled.switchAt(cell) != -1 || compiled.switchAt(second) != -1) {
+                    onSwitch[orientation][cell >>> 6] |= 1L << cell;
+                } else if (deadStates.isDead(encoder.encode(cell, second, 0, 0))) {
+                    continue;
+                } else if (generator.isSupported(cell, second, false, 0L)) {
+                    alwaysOpen[orientation][cell >>> 6] |= 1L << cell;
+                } else {
+                    if (sometimesCount == sometimes.length)
+                        sometimes = Arrays.copyOf(sometimes, sometimesCount * 2);
+                    sometimes[sometimesCount++] = cell;
+                }
+            }
+            sometimesOpen[orientation] = Arrays.copyOf(sometimes, sometimesCount);
+        }
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * Nodes expanded counts states in layers that were advanced, and nodes generated counts the moves that landed.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, SearchStats stats) {
+        return solve(level, stats, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Searches for a minimal player move pattern within a budget, which is checked before each layer
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public static SolveResult solve(Level level, SearchStats stats, SolveBudget budget) {
+        long startTime = System.nanoTime();
+        return new BitboardSearch(new CompiledLevel(level)).search(stats, new BudgetTracker(budget, startTime),
+                startTime);
+    }
+
+    private SolveResult search(SearchStats stats, BudgetTracker tracker, long startTime) {
+        stats.setLevelAnalysis(compiled, deadStates);
+
+        List<Board> active = new ArrayList<>();
+        long[] splits = new long[0];
+        add(compiled.getStartKey(), active, null);
+        layers.add(finishLayer(active, splits));
+        long layerSize = 1, expanded = 0;
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+
+        long goalKey = -1;
+        while (!active.isEmpty() || splits.length > 0) {
+            // A layer is advanced all at once, so it only goes ahead if it fits in what's left of the budget
+            SolveResult.Status limit = tracker.check(expanded + layerSize, footprintBytes(), layers.size() - 1,
+                    layerSize);
+            if (limit != null) {
+                status = limit;
+                break;
+            }
+            List<Board> touched = new ArrayList<>();
+            LongArrayBuilder nextSplits = new LongArrayBuilder();
+            for (Board board : active)
+                advance(board, touched, nextSplits, stats);
+            for (long key : splits) {
+                stats.addExpanded();
+                int count = generator.expand(key, childKeys, childMoves);
+                generated += count;
+                for (int c = 0; c < count; ++c)
+                    add(childKeys[c], touched, nextSplits);
+            }
+            splits = nextSplits.toSortedArray();
+            Layer layer = finishLayer(touched, splits);
+            layers.add(layer);
+            expanded += layerSize;
+            layerSize = size(layer);
+            stats.updatePeakQueueSize(layerSize);
+            active = touched;
+
+            int goal = compiled.getGoalCell();
+            for (Board board : active) {
+                if ((board.frontier[MoveGenerator.VERTICAL][goal >>> 6] >>> goal & 1) != 0) {
+                    goalKey = encoder.encode(goal, goal, 0, board.bridges);
+                    break;
+                }
+            }
+            if (goalKey != -1)
+                break;
+        }
+
+        stats.addGenerated((int) Math.min(Integer.MAX_VALUE, generated));
+        stats.addDuplicates(duplicates);
+        stats.setVisitedSize(visitedCount);
+        stats.setPrunedStates(pruned + generator.getPrunedCount());
+        stats.setSearchNanos(System.nanoTime() - startTime);
+        if (goalKey == -1)
+            return new SolveResult(status, new ArrayList<>());
+
+        long reconstructionStart = System.nanoTime();
+        List<String> movePattern = new ArrayList<>();
+        long key = goalKey;
+        for (int depth = layers.size() - 1; depth > 0; --depth) {
+            key = findParent(layers.get(depth - 1), key);
+            movePattern.add(Move.fromOrdinal(parentMove).description());
+        }
+        Collections.reverse(movePattern);
+        stats.setReconstructionNanos(System.nanoTime() - reconstructionStart);
+        return new SolveResult(SolveResult.Status.SOLVED, movePattern);
+    }
+
+    /**
+     * @return Roughly how many bytes the boards, the kept layers and the split players take up
+     */
+    private long footprintBytes() {
+        return (long) boards.size() * 4 * ORIENTATIONS * words * Long.BYTES + layerBytes
+                + visitedSplits.footprintBytes();
+    }
+
+    /**
+     * Rolls every block of a board's frontier in every direction, adding the blocks that land to the next layer
+     */
+    private void advance(Board board, List<Board> touched, LongArrayBuilder nextSplits, SearchStats stats) {
+        for (int orientation = 0; orientation < ORIENTATIONS; ++orientation) {
+            int low = board.frontierLow[orientation], high = board.frontierHigh[orientation];
+            if (low >= high)
+                continue;
+            long[] source = board.frontier[orientation];
+            long expanded = 0;
+            for (int i = low; i < high; ++i)
+                expanded += Long.bitCount(source[i]);
+            stats.addExpanded((int) expanded);
+
+            for (int direction = 0; direction < MoveGenerator.DIRECTIONS; ++direction) {
+                int rolled = MoveGenerator.rolledOrientation(orientation, direction);
+                int offset = generator.rollOffset(orientation, direction);
+                int wordShift = Math.floorDiv(offset, 64), bitShift = Math.floorMod(offset, 64);
+                int from = Math.max(0, low + wordShift);
+                int to = Math.min(words, high + wordShift + ((bitShift != 0) ? 1 : 0));
+                long[] open = board.open[rolled], visited = board.visited[rolled], next = board.next[rolled];
+                long[] switches = onSwitch[rolled];
+                for (int i = from; i < to; ++i) {
+                    int j = i - wordShift;
+                    long word = (j >= low && j < high) ? source[j] << bitShift : 0;
+                    if (bitShift != 0 && j - 1 >= low && j - 1 < high)
+                        word |= source[j - 1] >>> (64 - bitShift);
+                    if (word == 0)
+                        continue;
+
+                    long landed = word & open[i];
+                    long fresh = landed & ~visited[i];
+                    generated += Long.bitCount(landed);
+                    if (fresh != 0) {
+                        int count = Long.bitCount(fresh);
+                        duplicates += Long.bitCount(landed) - count;
+                        visitedCount += count;
+                        visited[i] |= fresh;
+                        next[i] |= fresh;
+                        board.nextLow[rolled] = Math.min(board.nextLow[rolled], i);
+                        board.nextHigh[rolled] = Math.max(board.nextHigh[rolled], i + 1);
+                        touch(board, touched);
+                    } else {
+                        duplicates += Long.bitCount(landed);
+                    }
+
+                    // Switches go through the same landing as every other engine
+                    for (long hits = word & switches[i]; hits != 0; hits &= hits - 1) {
+                        int cell = i << 6 | Long.numberOfTrailingZeros(hits);
+                        int second = cell + generator.span(rolled);
+                        if (!generator.isSupported(cell, second, false, board.bridges))
+                            continue;
+                        ++generated;
+                        long child = generator.landingKey(cell, second, 0, board.bridges);
+                        if (deadStates.isDead(child)) {
+                            ++pruned;
+                            continue;
+                        }
+                        add(child, touched, nextSplits);
+                    }
+                }
+            }
+            Arrays.fill(source, low, high, 0);
+            board.frontierLow[orientation] = words;
+            board.frontierHigh[orientation] = 0;
+        }
+    }
+
+    /**
+     * Adds a state to the next layer unless it was reached before
+     */
+    private void add(long key, List<Board> touched, LongArrayBuilder nextSplits) {
+        int first = encoder.firstCell(key), second = encoder.secondCell(key);
+        if (!generator.isWhole(first, second)) {
+            if (visitedSplits.add(key)) {
+                ++visitedCount;
+                nextSplits.add(key);
+            } else {
+                ++duplicates;
+            }
+            return;
+        }
+        Board board = board(encoder.bridges(key));
+        int orientation = orientationOf(first, second);
+        int i = first >>> 6;
+        long bit = 1L << first;
+        if ((board.visited[orientation][i] & bit) != 0) {
+            ++duplicates;
+            return;
+        }
+        ++visitedCount;
+        board.visited[orientation][i] |= bit;
+        board.next[orientation][i] |= bit;
+        board.nextLow[orientation] = Math.min(board.nextLow[orientation], i);
+        board.nextHigh[orientation] = Math.max(board.nextHigh[orientation], i + 1);
+        touch(board, touched);
+    }
+
+    private static void touch(Board board, List<Board> touched) {
+        if (!board.touched) {
+            board.touched = true;
+            touched.add(board);
+        }
+    }
+
+    private Board board(long bridges) {
+        int index = boardIndices.get(bridges);
+        if (index != -1)
+            return boards.get(index);
+        Board board = new Board(bridges);
+        boardIndices.put(bridges, boards.size());
+        boards.add(board);
+        return board;
+    }
+
+    private int orientationOf(int first, int second) {
+        int span = second - first;
+        return (span == 0) ? MoveGenerator.VERTICAL : (span == 1) ? MoveGenerator.ALONG_Y : MoveGenerator.ALONG_X;
+    }
+
+    /**
+     * Makes the states added since the last layer the new frontier, and keeps a compact copy of them
+     * @param touched The boards that got new states
+     * @param splits The new split players
+     * @return The new layer
+     */
+    private Layer finishLayer(List<Board> touched, long[] splits) {
+        long[] bridges = new long[touched.size()];
+        int[][][] indices = new int[touched.size()][ORIENTATIONS][];
+        long[][][] layerWords = new long[touched.size()][ORIENTATIONS][];
+        for (int b = 0; b < touched.size(); ++b) {
+            Board board = touched.get(b);
+            board.touched = false;
+            long[][] emptied = board.frontier;
+            board.frontier = board.next;
+            board.next = emptied;
+            int[] low = board.frontierLow, high = board.frontierHigh;
+            board.frontierLow = board.nextLow;
+            board.frontierHigh = board.nextHigh;
+            board.nextLow = low;
+            board.nextHigh = high;
+            Arrays.fill(board.nextLow, words);
+            Arrays.fill(board.nextHigh, 0);
+
+            bridges[b] = board.bridges;
+            for (int orientation = 0; orientation < ORIENTATIONS; ++orientation) {
+                long[] frontier = board.frontier[orientation];
+                int count = 0;
+                for (int i = board.frontierLow[orientation]; i < board.frontierHigh[orientation]; ++i)
+                    if (frontier[i] != 0)
+                        ++count;
+                indices[b][orientation] = new int[count];
+                layerWords[b][orientation] = new long[count];
+                layerBytes += (long) count * (Integer.BYTES + Long.BYTES);
+                count = 0;
+                for (int i = board.frontierLow[orientation]; i < board.frontierHigh[orientation]; ++i) {
+                    if (frontier[i] != 0) {
+                        indices[b][orientation][count] = i;
+                        layerWords[b][orientation][count++] = frontier[i];
+                    }
+                }
+            }
+        }
+        layerBytes += (long) splits.length * Long.BYTES;
+        return new Layer(bridges, indices, layerWords, splits);
+    }
+
+    private static long size(Layer layer) {
+        long size = layer.splits().length;
+        for (long[][] board : layer.words())
+            for (long[] orientation : board)
+                for (long word : orientation)
+                    size += Long.bitCount(word);
+        return size;
+    }
+
+    private boolean contains(Layer layer, long key) {
+        int first = encoder.firstCell(key), second = encoder.secondCell(key);
+        if (!generator.isWhole(first, second))
+            return Arrays.binarySearch(layer.splits(), key) >= 0;
+        long bridges = encoder.bridges(key);
+        int orientation = orientationOf(first, second);
+        for (int b = 0; b < layer.bridges().length; ++b) {
+            if (layer.bridges()[b] != bridges)
+                continue;
+            int i = Arrays.binarySearch(layer.indices()[b][orientation], first >>> 6);
+            return i >= 0 && (layer.words()[b][orientation][i] >>> first & 1) != 0;
+        }
+        return false;
+    }
+
+    /**
+     * Finds a state in a layer that leads to a state of the next one in a single move, leaving the move in parentMove
+     * @param layer The earlier layer
+     * @param key The state
+     * @return The parent
+     */
+    private long findParent(Layer layer, long key) {
+        int first = encoder.firstCell(key), second = encoder.secondCell(key);
+        if (generator.isWhole(first, second)) {
+            // A roll in the opposite direction undoes a roll, so these are the placements a plain roll comes from
+            int orientation = orientationOf(first, second);
+            long bridges = encoder.bridges(key);
+            for (int direction = 0; direction < MoveGenerator.DIRECTIONS; ++direction) {
+                int parentFirst = first + generator.rollOffset(orientation, direction);
+                int parentSecond = parentFirst
+                        + generator.span(MoveGenerator.rolledOrientation(orientation, direction));
+                if (parentFirst < 0 || parentSecond >= cellCount)
+                    continue;
+                long candidate = encoder.encode(parentFirst, parentSecond, 0, bridges);
+                if (contains(layer, candidate) && leadsTo(candidate, key))
+                    return candidate;
+            }
+        }
+
+        for (int b = 0; b < layer.bridges().length; ++b) {
+            for (int orientation = 0; orientation < ORIENTATIONS; ++orientation) {
+                int[] indices = layer.indices()[b][orientation];
+                for (int w = 0; w < indices.length; ++w) {
+                    for (long bits = layer.words()[b][orientation][w]; bits != 0; bits &= bits - 1) {
+                        int cell = indices[w] << 6 | Long.numberOfTrailingZeros(bits);
+                        long candidate = encoder.encode(cell, cell + generator.span(orientation), 0,
+                                layer.bridges()[b]);
+                        if (leadsTo(candidate, key))
+                            return candidate;
+                    }
+                }
+            }
+        }
+        for (long candidate : layer.splits())
+            if (leadsTo(candidate, key))
+                return candidate;
+        throw new IllegalStateException("A state of the path has no parent in the layer before it");
+    }
+
+    private boolean leadsTo(long parent, long child) {
+        int count = generator.expand(parent, childKeys, childMoves);
+        for (int c = 0; c < count; ++c) {
+            if (childKeys[c] == child) {
+                parentMove = childMoves[c];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// Collects longs into an array without boxing them
+    private static final class LongArrayBuilder {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] array = Arrays.copyOf(values, size);
+            Arrays.sort(array);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.superhelix;
+
+/// Checks a SolveBudget on behalf of a search, so every engine applies its limits the same way.
+/// The expansion limit is looked at on every call. The cancellation token, the clock, the memory estimate and the
+/// progress listener are looked at once CHECK_INTERVAL expansions have passed since the last time, so a search that
+/// checks once per layer looks at them on every layer.
+final class BudgetTracker {
+    private final SolveBudget budget;
+    private final long startTime;
+    private long lastProgress;
+    private long nextCheck;
+    private long steps;
+
+    /**
+     * @param budget The limits on the search
+     * @param startTime When the search started, from System.nanoTime
+     */
+    BudgetTracker(SolveBudget budget, long startTime) {
+        this.budget = budget;
+        this.startTime = startTime;
+        lastProgress = startTime;
+    }
+
+    /**
+     * Checks the budget before the search expands more states
+     * @param expanded How many states will have been expanded once the next step is done
+     * @param memoryBytes The search's estimated memory use
+     * @param depth How many moves deep the search has got
+     * @param frontierSize How many states are waiting to be expanded
+     * @return The limit that was hit, or null to keep going
+     */
+    SolveResult.Status check(long expanded, long memoryBytes, int depth, long frontierSize) {
+        if (expanded > budget.maxExpanded())
+            return SolveResult.Status.NODE_LIMIT;
+        if (expanded < nextCheck)
+            return null;
+        nextCheck = expanded + SolveBudget.CHECK_INTERVAL;
+        SolveResult.Status limit = budget.check(startTime, memoryBytes);
+        if (limit != null)
+            return limit;
+        if (budget.progress() != null && System.nanoTime() - lastProgress >= budget.progressIntervalNanos()) {
+            lastProgress = System.nanoTime();
+            budget.progress().onProgress(depth, frontierSize, expanded);
+        }
+        return null;
+    }
+
+    /**
+     * Checks every limit but the expansion limit, for a single expansion that does a lot of work of its own. Only
+     * every CHECK_INTERVAL calls look at the limits.
+     * @param memoryBytes The search's estimated memory use
+     * @return The limit that was hit, or null to keep going
+     */
+    SolveResult.Status checkStep(long memoryBytes) {
+        if (++steps % SolveBudget.CHECK_INTERVAL != 0)
+            return null;
+        return budget.check(startTime, memoryBytes);
+    }
+}
@@ -0,0 +1,11 @@
+package com.superhelix;
+
+/// Lets one thread ask a solve running on another thread to stop. The search checks it between expansions, and
+/// gives up with SolveResult.Status.CANCELLED once it's set.
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() { cancelled = true; }
+
+    public boolean isCancelled() { return cancelled; }
+}
@@ -0,0 +1,395 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// A Level flattened into primitive arrays so that the search never has to copy or repaint the tile matrix.
+/// The grid is padded with void on every side, so any cell a move can reach is inside the arrays, and cells are
+/// numbered column by column (see StateEncoder for why).
+/// Every tile group that a switch can change gets a bit in a bridge mask, and every switch cell maps to a compiled
+/// switch whose actions are folded into three masks, so pressing it is ((bridges & and) | or) ^ xor.
+/// Tile groups that always have the same state share a bit, and groups that no reachable state's moves ever look at
+/// get none, since their state can't change where the player goes. Reachable states come from the relaxed level's
+/// RelaxedGraph, which is walked once here and kept for DeadStateAnalysis.
+public class CompiledLevel {
+    /// Moves reach at most two cells past a tile, and the fall check looks one cell beyond that
+    public static final int PADDING = 3;
+
+    private static final Tile[] TILES = Tile.values();
+
+    // What pressing a switch does to a tile group, after all of its actions on it
+    private static final byte NO_EFFECT = 0, TURNS_ON = 1, TURNS_OFF = 2, TOGGLES = 3;
+
+    private final Level level;
+    private final int width, height;
+    private final byte[] tiles;
+    private final long[] bridgeMasks;
+    private final int[] switchAt;
+    /// The identifiers of the tile groups that share each bridge bit
+    private final String[] bridgeGroups;
+    private final int switchedBridgeCount, mergedBridgeCount;
+    private final long startingBridges;
+    private final int startCell, goalCell;
+
+    private final boolean[] hardSwitches;
+    private final long[] andMasks, orMasks, xorMasks;
+    private final int[] teleportFirst, teleportSecond;
+
+    private final StateEncoder encoder;
+    /// This level relaxed as described by relax(), which is the level itself if it's already relaxed
+    private final CompiledLevel relaxed;
+    /// The relaxed level's placements, or null if this level is the relaxed one
+    private final RelaxedGraph relaxedGraph;
+
+    public CompiledLevel(Level level) {
+        this.level = level;
+        int levelWidth = 0;
+        for (List<Tile> row : level.tiles())
+            levelWidth = Math.max(levelWidth, row.size());
+        width = levelWidth + 2 * PADDING;
+        height = level.tiles().size() + 2 * PADDING;
+
+        tiles = new byte[width * height];
+        Arrays.fill(tiles, (byte) Tile.VOID.ordinal());
+        for (int y = 0; y < level.tiles().size(); ++y) {
+            List<Tile> row = level.tiles().get(y);
+            for (int x = 0; x < row.size(); ++x)
+                tiles[cellOf(x, y)] = (byte) row.get(x).ordinal();
+        }
+
+        // Switches are numbered in the metadata's iteration order, which is the order they're pressed in
+        List<SwitchAttribute> switches = new ArrayList<>();
+        switchAt = new int[tiles.length];
+        Arrays.fill(switchAt, -1);
+        for (TileMetadata metadata : level.tilesMetadata().values()) {
+            SwitchAttribute attr = metadata.getSwitchAttribute();
+            if (attr == null)
+                continue;
+            for (Position pos : metadata.getPositions())
+                switchAt[cellOf(pos)] = switches.size();
+            switches.add(attr);
+        }
+        int switchCount = switches.size();
+
+        // Only the tiles named by a switch action can ever differ from their starting state. A tile group's starting
+        // state and what every switch does to it decide its state after any presses, so groups with the same history
+        // always agree and share a bit, and groups no switch ends up changing (such as ones toggled twice) get none.
+        Map<Character, byte[]> histories = new TreeMap<>();
+        for (int i = 0; i < switchCount; ++i) {
+            for (TileAction action : switches.get(i).bridgeActions()) {
+                byte[] history = histories.computeIfAbsent(action.tileId(), id -> new byte[switchCount + 1]);
+                history[i + 1] = compose(history[i + 1], action.effect());
+            }
+        }
+        Map<String, StringBuilder> groups = new LinkedHashMap<>();
+        for (Map.Entry<Character, byte[]> entry : histories.entrySet()) {
+            byte[] history = entry.getValue();
+            TileMetadata metadata = level.tilesMetadata().get(entry.getKey());
+            history[0] = (byte) ((metadata != null && metadata.getStartingBridgeState()) ? 1 : 0);
+            boolean changes = false;
+            for (int i = 1; i < history.length; ++i)
+                changes |= history[i] != NO_EFFECT;
+            if (changes)
+                groups.computeIfAbsent(Arrays.toString(history), k -> new StringBuilder()).append(entry.getKey());
+        }
+        switchedBridgeCount = histories.size();
+        mergedBridgeCount = groups.size();
+        Set<Character> changingIds = new HashSet<>();
+        for (StringBuilder ids : groups.values())
+            for (int i = 0; i < ids.length(); ++i)
+                changingIds.add(ids.charAt(i));
+        voidUnswitched(changingIds);
+
+        hardSwitches = new boolean[switchCount];
+        teleportFirst = new int[switchCount];
+        teleportSecond = new int[switchCount];
+        for (int i = 0; i < switchCount; ++i) {
+            SwitchAttribute attr = switches.get(i);
+            hardSwitches[i] = attr.activationType() == ActivationType.HARD;
+            Position[] locations = attr.teleportLocations();
+            teleportFirst[i] = (locations != null) ? cellOf(locations[0]) : -1;
+            teleportSecond[i] = (locations != null) ? cellOf(locations[1]) : -1;
+        }
+        startCell = cellOf(level.tilesMetadata().get('$').getPositions().get(0));
+        goalCell = cellOf(level.tilesMetadata().get('^').getPositions().get(0));
+
+        // Which bridges matter depends on where the player can go, which the relaxed level shows, since every bridge
+        // is on there. Without the whole walk every switched group keeps its bit.
+        relaxed = new CompiledLevel(level, width, height, tiles, switchAt, hardSwitches, teleportFirst,
+                teleportSecond, startCell, goalCell);
+        relaxedGraph = new RelaxedGraph(relaxed);
+        boolean[] inReach = relaxedGraph.isComplete() ? cellsInReach() : null;
+
+        // A group whose tiles no reachable state ever looks at can't change where the player can go
+        List<String> kept = new ArrayList<>();
+        for (StringBuilder ids : groups.values()) {
+            boolean relevant = inReach == null;
+            for (int i = 0; i < ids.length() && !relevant; ++i) {
+                TileMetadata metadata = level.tilesMetadata().get(ids.charAt(i));
+                if (metadata != null)
+                    for (Position pos : metadata.getPositions())
+                        relevant |= inReach[cellOf(pos)];
+            }
+            if (relevant)
+                kept.add(ids.toString());
+        }
+        bridgeGroups = kept.toArray(new String[0]);
+
+        bridgeMasks = new long[tiles.length];
+        andMasks = new long[switchCount];
+        Arrays.fill(andMasks, -1L);
+        orMasks = new long[switchCount];
+        xorMasks = new long[switchCount];
+        long bridges = 0;
+        Set<Character> bridgeIds = new HashSet<>();
+        for (int bit = 0; bit < bridgeGroups.length; ++bit) {
+            long mask = 1L << bit;
+            byte[] history = histories.get(bridgeGroups[bit].charAt(0));
+            if (history[0] != 0)
+                bridges |= mask;
+            for (int i = 0; i < switchCount; ++i) {
+                switch (history[i + 1]) {
+                    case TURNS_ON -> { andMasks[i] &= ~mask; orMasks[i] |= mask; }
+                    case TURNS_OFF -> andMasks[i] &= ~mask;
+                    case TOGGLES -> xorMasks[i] |= mask;
+                }
+            }
+            for (char id : bridgeGroups[bit].toCharArray()) {
+                bridgeIds.add(id);
+                TileMetadata metadata = level.tilesMetadata().get(id);
+                if (metadata != null)
+                    for (Position pos : metadata.getPositions())
+                        bridgeMasks[cellOf(pos)] = mask;
+            }
+        }
+        startingBridges = bridges;
+        voidUnswitched(bridgeIds);
+        encoder = new StateEncoder(this);
+    }
+
+    /**
+     * Turns the tiles of every tile group that starts off, and isn't among some tile groups, into void
+     * @param switched The tile groups that can be turned on
+     */
+    private void voidUnswitched(Set<Character> switched) {
+        for (TileMetadata metadata : level.tilesMetadata().values()) {
+            if (!switched.contains(metadata.getId()) && !metadata.getStartingBridgeState()) {
+                // Starts off and nothing that matters can turn it on
+                for (Position pos : metadata.getPositions())
+                    tiles[cellOf(pos)] = (byte) Tile.VOID.ordinal();
+            }
+        }
+    }
+
+    /**
+     * Combines what a switch already does to a tile group with one more of its actions
+     * @param history What the switch does so far
+     * @param effect The next action's effect
+     * @return What the switch does after both
+     */
+    private static byte compose(byte history, BridgeEffect effect) {
+        return switch (effect) {
+            case ON -> TURNS_ON;
+            case OFF -> TURNS_OFF;
+            case TOGGLE -> switch (history) {
+                case TURNS_ON -> TURNS_OFF;
+                case TURNS_OFF -> TURNS_ON;
+                case TOGGLES -> NO_EFFECT;
+                default -> TOGGLES;
+            };
+        };
+    }
+
+    /**
+     * Marks the cells the moves of every placement the player can reach with every bridge on look at, which are at
+     * most PADDING cells from the block
+     * @return The cells in reach
+     */
+    private boolean[] cellsInReach() {
+        StateEncoder relaxedEncoder = relaxed.getEncoder();
+        boolean[] inReach = new boolean[tiles.length];
+        for (int i = 0; i < relaxedGraph.size(); ++i) {
+            long key = relaxedGraph.getPlacement(i);
+            markAround(inReach, relaxedEncoder.firstCell(key));
+            markAround(inReach, relaxedEncoder.secondCell(key));
+        }
+        return inReach;
+    }
+
+    private void markAround(boolean[] cells, int cell) {
+        int column = cell / height, row = cell % height;
+        for (int x = Math.max(0, column - PADDING); x <= Math.min(width - 1, column + PADDING); ++x)
+            for (int y = Math.max(0, row - PADDING); y <= Math.min(height - 1, row + PADDING); ++y)
+                cells[x * height + y] = true;
+    }
+
+    /// Builds the relaxed level, as described by relax(), from the parts of a level that has every switched tile
+    /// group's tiles in place
+    private CompiledLevel(Level level, int width, int height, byte[] tiles, int[] switchAt, boolean[] hardSwitches,
+                          int[] teleportFirst, int[] teleportSecond, int startCell, int goalCell) {
+        this.level = level;
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles.clone();
+        for (int cell = 0; cell < tiles.length; ++cell)
+            if (this.tiles[cell] == Tile.WEAK_FLOOR.ordinal())
+                this.tiles[cell] = (byte) Tile.STRONG_FLOOR.ordinal();
+        bridgeMasks = new long[tiles.length];
+        this.switchAt = switchAt;
+        bridgeGroups = new String[0];
+        switchedBridgeCount = 0;
+        mergedBridgeCount = 0;
+        startingBridges = 0;
+        this.startCell = startCell;
+        this.goalCell = goalCell;
+
+        this.hardSwitches = hardSwitches;
+        andMasks = new long[hardSwitches.length];
+        Arrays.fill(andMasks, -1L);
+        orMasks = new long[hardSwitches.length];
+        xorMasks = new long[hardSwitches.length];
+        this.teleportFirst = teleportFirst;
+        this.teleportSecond = teleportSecond;
+        encoder = new StateEncoder(this);
+        relaxed = this;
+        relaxedGraph = null;
+    }
+
+    /**
+     * Gets a more permissive copy of this level for computing lower bounds, built along with it. Every bridge is permanently on, weak
+     * floor holds like strong floor, and switches keep their teleports but no longer change anything else.
+     * Any move that's legal in the original level is legal here, and a state key of the original level with its
+     * bridges stripped is a valid key here.
+     * @return The relaxed level
+     */
+    public CompiledLevel relax() { return relaxed; }
+
+    /**
+     * @return The placements the player can get to in the relaxed level, walked once when the level was compiled, or
+     *         null if this is the relaxed level
+     */
+    public RelaxedGraph getRelaxedGraph() { return relaxedGraph; }
+
+    public int cellOf(int x, int y) {
+        return (x + PADDING) * height + (y + PADDING);
+    }
+
+    public int cellOf(Position pos) {
+        return cellOf(pos.x(), pos.y());
+    }
+
+    public Position positionOf(int cell) {
+        return new Position(cell / height - PADDING, cell % height - PADDING);
+    }
+
+    /**
+     * Gets the tile at a cell as it appears under a set of bridge states
+     * @param cell The cell index
+     * @param bridges The bridge mask
+     * @return The tile, which is void if its bridge is off
+     */
+    public Tile tileAt(int cell, long bridges) {
+        long mask = bridgeMasks[cell];
+        if (mask != 0 && (bridges & mask) == 0)
+            return Tile.VOID;
+        return TILES[tiles[cell]];
+    }
+
+    /**
+     * @param cell The cell index
+     * @return The switch on that cell, or -1 if there isn't one
+     */
+    public int switchAt(int cell) { return switchAt[cell]; }
+
+    public boolean isHardSwitch(int switchIndex) { return hardSwitches[switchIndex]; }
+
+    /**
+     * Applies every bridge action of a switch
+     * @param switchIndex The switch being pressed
+     * @param bridges The bridge mask before pressing it
+     * @return The bridge mask afterwards
+     */
+    public long pressSwitch(int switchIndex, long bridges) {
+        return ((bridges & andMasks[switchIndex]) | orMasks[switchIndex]) ^ xorMasks[switchIndex];
+    }
+
+    /**
+     * @param switchIndex The switch
+     * @return The cell the controlled half is teleported to, or -1 if the switch doesn't teleport
+     */
+    public int teleportFirst(int switchIndex) { return teleportFirst[switchIndex]; }
+
+    public int teleportSecond(int switchIndex) { return teleportSecond[switchIndex]; }
+
+    public Level getLevel() { return level; }
+
+    /** @return The padded width */
+    public int getWidth() { return width; }
+
+    /** @return The padded height, which is also the offset between horizontally adjacent cells */
+    public int getHeight() { return height; }
+
+    public int getCellCount() { return tiles.length; }
+
+    public int getSwitchCount() { return hardSwitches.length; }
+
+    /** @return How many bits a state key spends on bridges */
+    public int getBridgeCount() { return bridgeGroups.length; }
+
+    /**
+     * @param bit A bridge bit
+     * @return The lowest identifier of the tile groups that share the bit
+     */
+    public char getBridgeId(int bit) { return bridgeGroups[bit].charAt(0); }
+
+    /**
+     * @param bit A bridge bit
+     * @return The identifiers of every tile group that shares the bit, which always have the same state
+     */
+    public String getBridgeGroup(int bit) { return bridgeGroups[bit]; }
+
+    /** @return How many tile groups some switch action names, which is how many bits bridges took before merging */
+    public int getSwitchedBridgeCount() { return switchedBridgeCount; }
+
+    /** @return How many bridge bits are left after merging tile groups that always agree, before dropping any */
+    public int getMergedBridgeCount() { return mergedBridgeCount; }
+
+    public long getStartingBridges() { return startingBridges; }
+
+    /**
+     * Reduces the states of tile groups to a bridge mask
+     * @param states The map from tile group identifiers to whether they're on; groups that are missing are in their
+     *               starting state, and groups that no bit stands for are ignored
+     * @return The bridge mask, with bits numbered by getBridgeId
+     */
+    public long bridgesOf(Map<Character, Boolean> states) {
+        long bridges = startingBridges;
+        for (int bit = 0; bit < bridgeGroups.length; ++bit) {
+            // Every group sharing the bit has the same state, so any of them that is given decides it
+            for (char id : bridgeGroups[bit].toCharArray()) {
+                Boolean on = states.get(id);
+                if (on != null) {
+                    bridges = on ? bridges | (1L << bit) : bridges & ~(1L << bit);
+                    break;
+                }
+            }
+        }
+        return bridges;
+    }
+
+    public int getStartCell() { return startCell; }
+
+    public int getGoalCell() { return goalCell; }
+
+    public StateEncoder getEncoder() { return encoder; }
+
+    /** @return The packed state the player starts in */
+    public long getStartKey() { return encoder.encode(startCell, startCell, 0, startingBridges); }
+
+    /**
+     * @param key A packed state
+     * @return Whether the player is standing upright on the goal
+     */
+    public boolean isGoal(long key) {
+        return encoder.firstCell(key) == goalCell && encoder.secondCell(key) == goalCell;
+    }
+}
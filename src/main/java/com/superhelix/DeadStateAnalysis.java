@@ -0,0 +1,89 @@
+package com.superhelix;
+
+/// Finds the states of a level that can never lead to the goal, before the search starts, so they can be dropped as
+/// soon as they're generated (see MoveGenerator).
+/// A state is dead when its placement can't reach the goal in the relaxed level (see CompiledLevel.relax), which is
+/// the case for placements the block can only fall from or get stranded in even with every bridge on. Since every
+/// real move is also a relaxed move, no state on a path to the goal is ever dropped, and a dead state's children are
+/// all dead too, so breadth-first search still finds the same solution.
+/// The analysis also finds switches that no live state can press, whose actions therefore never matter.
+/// Levels whose relaxed graph is too large to walk (see RelaxedGraph) get no analysis at all: nothing is dead and
+/// every switch is useful, so the search runs as if there were no pruning rather than paying for a huge pre-pass.
+public class DeadStateAnalysis {
+    private final DistanceHeuristic distances;
+    private final long usefulSwitches;
+    private final int switchCount;
+
+    public DeadStateAnalysis(CompiledLevel level) {
+        CompiledLevel relaxed = level.relax();
+        RelaxedGraph graph = level.getRelaxedGraph();
+        distances = new DistanceHeuristic(level, graph);
+        switchCount = level.getSwitchCount();
+        if (!graph.isComplete()) {
+            // Nothing is known to be dead, so every switch may matter
+            usefulSwitches = (switchCount == Long.SIZE) ? -1L : (1L << switchCount) - 1;
+            return;
+        }
+
+        // Walk the live part of the relaxed graph, collecting the switches pressed on the way. Only the moves'
+        // switches are missing from the graph, so the live placements are expanded again to get them.
+        MoveGenerator generator = new MoveGenerator(relaxed);
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+        long[] childSwitches = new long[MoveGenerator.MAX_CHILDREN];
+        boolean[] visited = new boolean[graph.size()];
+        int[] queue = new int[graph.size()];
+        int head = 0, tail = 0;
+        long switches = 0;
+        if (!isDead(graph.getPlacement(0))) {
+            visited[0] = true;
+            queue[tail++] = 0;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            if (node == graph.getGoalIndex())
+                continue;
+            int count = generator.expand(graph.getPlacement(node), childKeys, childMoves, childSwitches);
+            for (int c = 0; c < count; ++c) {
+                if (isDead(childKeys[c]))
+                    continue;
+                switches |= childSwitches[c];
+                int child = graph.indexOf(childKeys[c]);
+                if (!visited[child]) {
+                    visited[child] = true;
+                    queue[tail++] = child;
+                }
+            }
+        }
+        usefulSwitches = switches;
+    }
+
+    /**
+     * @param key A packed state key
+     * @return Whether the goal can't be reached from the state
+     */
+    public boolean isDead(long key) {
+        return distances.estimate(key) == DistanceHeuristic.UNREACHABLE;
+    }
+
+    /** @return The relaxed distances to the goal that decide which states are dead, for use as a heuristic */
+    DistanceHeuristic getDistances() { return distances; }
+
+    /** @return How many placements (cells and focus, without bridges) can still reach the goal */
+    public int getLivePlacements() { return distances.size(); }
+
+    /**
+     * @return How many placements the player can get to at all, ignoring bridges and weak floor, or an upper bound on
+     *         it if there were too many to walk
+     */
+    public long getReachablePlacements() { return distances.getStateCount(); }
+
+    /** @return How many switches can only be pressed on the way to a dead state */
+    public int getDeadSwitchCount() { return switchCount - Long.bitCount(usefulSwitches); }
+
+    /**
+     * @param switchIndex A switch
+     * @return Whether a live state can press the switch
+     */
+    public boolean isUsefulSwitch(int switchIndex) { return (usefulSwitches >>> switchIndex & 1) != 0; }
+}
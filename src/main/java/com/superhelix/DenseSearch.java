@@ -0,0 +1,341 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// Breadth-first search that stores one byte per possible state instead of a node per visited state.
+/// Each state's byte holds the Move that first reached it in its low three bits, and its depth modulo 31 plus one in
+/// the high five bits, so zero means unvisited. States are ranked with DenseStateSpace, which only works when the
+/// level's state space is small enough to allocate; levels whose table doesn't fit in the heap (see fits) are handed
+/// to StateGraph instead.
+///
+/// The path is rebuilt backwards from the goal. For a state at depth d reached by move m, the states that move m
+/// could have come from are listed (see listPredecessors), and one that was reached at depth d - 1 and really
+/// leads here by m is taken. Since depths are only known modulo 31, a pick can in rare cases turn out to be deeper
+/// than d - 1; it then can't reach the start in time, and the walk backs up and tries the next candidate.
+public class DenseSearch {
+    /// The largest state space to allocate a table for
+    public static final long MAX_STATES = Integer.MAX_VALUE - 8;
+    /// The table may take up at most this fraction of the free heap, which leaves the rest for the layers, whose
+    /// ranks take four bytes each, and for the garbage collector
+    private static final int HEAP_SHARE = 4;
+
+    private static final int DEPTH_CLASSES = 31;
+
+    private final CompiledLevel compiled;
+    private final StateEncoder encoder;
+    private final MoveGenerator generator;
+    private final DenseStateSpace space;
+    private final byte[] records;
+    private final long allBridges;
+    private final List<int[]> teleportPlacements = new ArrayList<>();
+
+    private DenseSearch(CompiledLevel compiled, DeadStateAnalysis deadStates, DenseStateSpace space) {
+        this.compiled = compiled;
+        this.space = space;
+        encoder = compiled.getEncoder();
+        generator = new MoveGenerator(compiled, deadStates);
+        records = new byte[(int) space.size()];
+        allBridges = (1L << compiled.getBridgeCount()) - 1;
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, SearchStats stats) {
+        return solve(level, stats, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Searches for a minimal player move pattern within a budget. The table is allocated in full before searching,
+     * so it counts against the memory limit from the start.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public static SolveResult solve(Level level, SearchStats stats, SolveBudget budget) {
+        long startTime = System.nanoTime();
+        CompiledLevel compiled = new CompiledLevel(level);
+        DenseStateSpace space = new DenseStateSpace(compiled);
+        if (!fits(space.size()))
+            return StateGraph.solve(level, stats, budget);
+        DeadStateAnalysis deadStates = new DeadStateAnalysis(compiled);
+        stats.setLevelAnalysis(compiled, deadStates);
+        return new DenseSearch(compiled, deadStates, space).search(stats, new BudgetTracker(budget, startTime),
+                startTime);
+    }
+
+    /**
+     * @param states The size of a state space
+     * @return Whether a table for it can be allocated and still leave room to search
+     */
+    public static boolean fits(long states) {
+        Runtime runtime = Runtime.getRuntime();
+        long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return states <= MAX_STATES && states <= free / HEAP_SHARE;
+    }
+
+    private static byte record(Move move, int depth) {
+        return (byte) (move.ordinal() | (depth % DEPTH_CLASSES + 1) << 3);
+    }
+
+    private boolean hasDepth(long key, int depth) {
+        long rank = space.rank(key);
+        return rank != -1 && (records[(int) rank] & 0xff) >>> 3 == depth % DEPTH_CLASSES + 1;
+    }
+
+    private Move moveOf(long key) {
+        return Move.fromOrdinal(records[(int) space.rank(key)] & 7);
+    }
+
+    private SolveResult search(SearchStats stats, BudgetTracker tracker, long startTime) {
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+
+        long startKey = compiled.getStartKey();
+        records[(int) space.rank(startKey)] = record(Move.UP, 0);
+        int[] layer = {(int) space.rank(startKey)};
+        int layerSize = 1;
+        long visited = 1;
+        long expanded = 0;
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+
+        search:
+        for (int depth = 1; layerSize > 0; ++depth) {
+            int[] nextLayer = new int[Math.max(16, layerSize * 2)];
+            int nextSize = 0;
+            for (int i = 0; i < layerSize; ++i) {
+                SolveResult.Status limit = tracker.check(expanded + 1,
+                        records.length + (long) (layer.length + nextLayer.length) * Integer.BYTES, depth - 1,
+                        layerSize - i + nextSize);
+                if (limit != null) {
+                    status = limit;
+                    break search;
+                }
+                ++expanded;
+                int count = generator.expand(space.unrank(layer[i]), childKeys, childMoves);
+                stats.addExpanded();
+                stats.addGenerated(count);
+                for (int c = 0; c < count; ++c) {
+                    int rank = (int) space.rank(childKeys[c]);
+                    if (records[rank] != 0) {
+                        stats.addDuplicates(1);
+                        continue;
+                    }
+                    records[rank] = record(Move.fromOrdinal(childMoves[c]), depth);
+                    ++visited;
+
+                    if (compiled.isGoal(childKeys[c])) {
+                        stats.setVisitedSize(visited);
+                        stats.setPrunedStates(generator.getPrunedCount());
+                        stats.setSearchNanos(System.nanoTime() - startTime);
+                        long reconstructionStart = System.nanoTime();
+                        List<String> moves = reconstruct(childKeys[c], depth);
+                        stats.setReconstructionNanos(System.nanoTime() - reconstructionStart);
+                        return new SolveResult(SolveResult.Status.SOLVED, moves);
+                    }
+                    if (nextSize == nextLayer.length)
+                        nextLayer = Arrays.copyOf(nextLayer, nextSize * 2);
+                    nextLayer[nextSize++] = rank;
+                }
+            }
+            stats.updatePeakQueueSize(nextSize);
+            layer = nextLayer;
+            layerSize = nextSize;
+        }
+        stats.setVisitedSize(visited);
+        stats.setPrunedStates(generator.getPrunedCount());
+        stats.setSearchNanos(System.nanoTime() - startTime);
+
+        return new SolveResult(status, new ArrayList<>());
+    }
+
+    /**
+     * Walks back from the goal to the start through states at each smaller depth
+     * @param goalKey The goal state
+     * @param length The depth of the goal
+     * @return The move descriptions from the start to the goal
+     */
+    private List<String> reconstruct(long goalKey, int length) {
+        long[] path = new long[length + 1];
+        long[][] options = new long[length + 1][];
+        int[] nextOption = new int[length + 1];
+        long startKey = compiled.getStartKey();
+
+        path[length] = goalKey;
+        int depth = length;
+        while (depth > 0) {
+            if (options[depth] == null) {
+                options[depth] = listParents(path[depth], depth, startKey);
+                nextOption[depth] = 0;
+            }
+            if (nextOption[depth] < options[depth].length) {
+                path[depth - 1] = options[depth][nextOption[depth]++];
+                options[--depth] = null;
+            } else {
+                options[depth++] = null;
+                if (depth > length)
+                    throw new IllegalStateException("No path back to the start was found");
+            }
+        }
+
+        List<String> moves = new ArrayList<>(length);
+        for (int d = 1; d <= length; ++d)
+            moves.add(moveOf(path[d]).description());
+        return moves;
+    }
+
+    /**
+     * Lists the states that were reached one move before a state and lead to it by the move that reached it
+     * @param key The state
+     * @param depth The depth of the state
+     * @param startKey The start state, which is the only allowed parent at depth 1
+     * @return The parents
+     */
+    private long[] listParents(long key, int depth, long startKey) {
+        Move move = moveOf(key);
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+        LongHashSet seen = new LongHashSet(16);
+        List<Long> parents = new ArrayList<>();
+
+        for (long candidate : listPredecessors(key, move)) {
+            if (!seen.add(candidate) || !hasDepth(candidate, depth - 1))
+                continue;
+            if (depth == 1 && candidate != startKey)
+                continue;
+            int count = generator.expand(candidate, childKeys, childMoves);
+            for (int c = 0; c < count; ++c) {
+                if (childKeys[c] == key && childMoves[c] == move.ordinal()) {
+                    parents.add(candidate);
+                    break;
+                }
+            }
+        }
+
+        long[] result = new long[parents.size()];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = parents.get(i);
+        return result;
+    }
+
+    /**
+     * Lists every state that might lead to a state by a move. The list may include states that don't, but it always
+     * includes every state that does.
+     * @param key The state
+     * @param move The move
+     * @return The candidate states
+     */
+    private List<Long> listPredecessors(long key, Move move) {
+        int first = encoder.firstCell(key);
+        int second = encoder.secondCell(key);
+        long placement = encoder.placement(key);
+
+        // Where the move landed before any teleport: either right here, or anywhere covering a teleport switch that
+        // sends the player here
+        List<int[]> landings = new ArrayList<>();
+        landings.add(new int[]{first, second});
+        for (int[] teleport : teleportPlacements())
+            if (encoder.placement(encoder.encode(teleport[1], teleport[2], teleport[3], 0)) == placement)
+                landings.addAll(coveringPlacements(teleport[0]));
+
+        List<Long> candidates = new ArrayList<>();
+        long bridges = encoder.bridges(key);
+        for (int[] landing : landings) {
+            // Each bridge is either set to a constant by the switches pressed on landing, or kept or flipped
+            long whenOff = generator.pressSwitches(landing[0], landing[1], 0);
+            long whenOn = generator.pressSwitches(landing[0], landing[1], allBridges);
+            long constant = ~(whenOff ^ whenOn) & allBridges;
+            if (((bridges ^ whenOff) & constant) != 0)
+                continue;
+            long determined = (bridges ^ whenOff) & ~constant & allBridges;
+
+            for (long[] origin : listOrigins(landing[0], landing[1], move)) {
+                // Bridges that were overwritten could have been anything before
+                for (long sub = constant; ; sub = (sub - 1) & constant) {
+                    candidates.add(encoder.encode((int) origin[0], (int) origin[1], (int) origin[2], determined | sub));
+                    if (sub == 0)
+                        break;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Lists the placements a move could have started from to land on two cells
+     * @return Triples of first cell, second cell and focus
+     */
+    private List<long[]> listOrigins(int first, int second, Move move) {
+        List<long[]> origins = new ArrayList<>();
+        Position firstPos = compiled.positionOf(first);
+        Position secondPos = compiled.positionOf(second);
+        Direction direction = move.direction();
+        Direction opposite = switch (direction) {
+            case UP -> Direction.DOWN;
+            case DOWN -> Direction.UP;
+            case LEFT -> Direction.RIGHT;
+            case RIGHT -> Direction.LEFT;
+        };
+
+        // A whole block rolled here, which rolling back undoes
+        Player landed = new Player(firstPos, secondPos);
+        if (!landed.isSplit() && !move.switchesFocus()) {
+            Player origin = landed.newMovedPlayer(opposite, false);
+            if (!origin.isSplit())
+                origins.add(new long[]{compiled.cellOf(origin.getFirst()), compiled.cellOf(origin.getSecond()), 0});
+        }
+
+        // One half of a split player stepped here
+        for (int half = 0; half < 2; ++half) {
+            Position moved = (half == 0) ? firstPos : secondPos;
+            Position other = (half == 0) ? secondPos : firstPos;
+            Position before = moved.addTo(-direction.dx(), -direction.dy());
+            // Focus 0 points at the half that moves, and SPACE swaps it first
+            Player origin = new Player(before, other, move.switchesFocus() ? 1 : 0);
+            if (origin.isSplit())
+                origins.add(new long[]{compiled.cellOf(origin.getFirst()), compiled.cellOf(origin.getSecond()),
+                        origin.getFocus()});
+        }
+        return origins;
+    }
+
+    /**
+     * @return For every teleport, its switch cell and the first cell, second cell and focus it leaves the player in
+     */
+    private List<int[]> teleportPlacements() {
+        if (teleportPlacements.isEmpty()) {
+            for (int cell = 0; cell < compiled.getCellCount(); ++cell) {
+                int switchIndex = compiled.switchAt(cell);
+                if (switchIndex == -1 || compiled.teleportFirst(switchIndex) == -1)
+                    continue;
+                Player player = new Player(compiled.positionOf(compiled.teleportFirst(switchIndex)),
+                        compiled.positionOf(compiled.teleportSecond(switchIndex)));
+                teleportPlacements.add(new int[]{cell, compiled.cellOf(player.getFirst()),
+                        compiled.cellOf(player.getSecond()), player.getFocus()});
+            }
+        }
+        return teleportPlacements;
+    }
+
+    /**
+     * @param cell A cell
+     * @return Every pair of cells the player could cover the cell with
+     */
+    private List<int[]> coveringPlacements(int cell) {
+        int column = compiled.getHeight();
+        List<int[]> placements = new ArrayList<>(List.of(
+                new int[]{cell, cell},
+                new int[]{cell - column, cell}, new int[]{cell, cell + column},
+                new int[]{cell - 1, cell}, new int[]{cell, cell + 1}));
+        for (int i = 0; i < space.getDenseCellCount(); ++i) {
+            int other = space.cellOfDense(i);
+            if (other != cell)
+                placements.add(new int[]{Math.min(cell, other), Math.max(cell, other)});
+        }
+        return placements;
+    }
+}
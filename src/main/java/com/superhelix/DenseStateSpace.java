@@ -0,0 +1,112 @@
+package com.superhelix;
+
+/// Numbers every state a level could possibly be in with a dense index, so per-state data can live in flat arrays
+/// instead of hash tables or node objects.
+/// A rank is placement * 2^bridges + bridge mask, and placements are numbered as follows:
+/// - A whole block gets three numbers per cell of the padded grid: standing on it, lying across it and the cell to
+///   its right, and lying across it and the cell below it.
+/// - A split player is a pair of tiles that can hold it, plus the focus. These are only counted when the level has a
+///   teleport, since that's the only way to split the player.
+public class DenseStateSpace {
+    private final StateEncoder encoder;
+    private final int cellCount;
+    private final int height;
+    private final int[] denseCell;
+    private final int[] cellOfDense;
+    private final int bridgeBits;
+    private final boolean hasTeleports;
+    private final long wholePlacements;
+    private final long size;
+
+    public DenseStateSpace(CompiledLevel level) {
+        encoder = level.getEncoder();
+        cellCount = level.getCellCount();
+        height = level.getHeight();
+        bridgeBits = level.getBridgeCount();
+
+        boolean teleports = false;
+        for (int i = 0; i < level.getSwitchCount(); ++i)
+            teleports |= level.teleportFirst(i) != -1;
+        hasTeleports = teleports;
+
+        // Split halves always rest on a tile, so they only need numbering over cells that can ever be solid
+        denseCell = new int[cellCount];
+        int count = 0;
+        for (int cell = 0; cell < cellCount; ++cell)
+            denseCell[cell] = (level.tileAt(cell, -1L) != Tile.VOID) ? count++ : -1;
+        cellOfDense = new int[count];
+        for (int cell = 0; cell < cellCount; ++cell)
+            if (denseCell[cell] != -1)
+                cellOfDense[denseCell[cell]] = cell;
+
+        wholePlacements = 3L * cellCount;
+        long splitPlacements = hasTeleports ? 2L * count * count : 0;
+        long placements = wholePlacements + splitPlacements;
+        long total;
+        try {
+            total = Math.multiplyExact(placements, 1L << bridgeBits);
+        } catch (ArithmeticException e) {
+            total = Long.MAX_VALUE;
+        }
+        size = total;
+    }
+
+    /**
+     * Ranks a state
+     * @param key The packed state
+     * @return The rank, or -1 if the state isn't one this space numbers
+     */
+    public long rank(long key) {
+        int first = encoder.firstCell(key);
+        int second = encoder.secondCell(key);
+        long placement;
+        if (first == second) {
+            placement = 3L * first;
+        } else if (second - first == height) {
+            placement = 3L * first + 1;
+        } else if (second - first == 1) {
+            placement = 3L * first + 2;
+        } else {
+            if (!hasTeleports || denseCell[first] == -1 || denseCell[second] == -1)
+                return -1;
+            placement = wholePlacements
+                    + ((long) denseCell[first] * cellOfDense.length + denseCell[second]) * 2 + encoder.focus(key);
+        }
+        return placement << bridgeBits | encoder.bridges(key);
+    }
+
+    /**
+     * Turns a rank back into the state it came from
+     * @param rank The rank
+     * @return The packed state
+     */
+    public long unrank(long rank) {
+        long bridges = rank & ((1L << bridgeBits) - 1);
+        long placement = rank >>> bridgeBits;
+        if (placement < wholePlacements) {
+            int first = (int) (placement / 3);
+            int offset = switch ((int) (placement % 3)) {
+                case 0 -> 0;
+                case 1 -> height;
+                default -> 1;
+            };
+            return encoder.encode(first, first + offset, 0, bridges);
+        }
+        placement -= wholePlacements;
+        int focus = (int) (placement & 1);
+        placement >>>= 1;
+        int first = cellOfDense[(int) (placement / cellOfDense.length)];
+        int second = cellOfDense[(int) (placement % cellOfDense.length)];
+        return encoder.encode(first, second, focus, bridges);
+    }
+
+    /** @return How many ranks there are, or Long.MAX_VALUE if that doesn't fit in a long */
+    public long size() { return size; }
+
+    /** @return How many cells can ever hold the player */
+    public int getDenseCellCount() { return cellOfDense.length; }
+
+    public boolean isDenseCell(int cell) { return denseCell[cell] != -1; }
+
+    public int cellOfDense(int index) { return cellOfDense[index]; }
+}
@@ -6,12 +6,21 @@ public enum Direction {
     LEFT,
     RIGHT;
 
-    public int[] toOffset() {
+    /** @return How far a step in this direction moves along x */
+    public int dx() {
         return switch (this) {
-            case UP -> new int[]{0, -1};
-            case DOWN -> new int[]{0, 1};
-            case LEFT -> new int[]{-1, 0};
-            case RIGHT -> new int[]{1, 0};
+            case LEFT -> -1;
+            case RIGHT -> 1;
+            default -> 0;
+        };
+    }
+
+    /** @return How far a step in this direction moves along y */
+    public int dy() {
+        return switch (this) {
+            case UP -> -1;
+            case DOWN -> 1;
+            default -> 0;
         };
     }
 }
@@ -0,0 +1,92 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// A lower bound on the number of moves left from any state, used by AStarSearch.
+/// It is the exact distance to the goal in the relaxed level (see CompiledLevel.relax), where bridges are ignored.
+/// Every real move is also a move in the relaxed level, so the bound never overestimates, and it only changes by
+/// at most one per move, which lets A* close states the first time they're expanded.
+/// When the relaxed level has too many placements to walk (see RelaxedGraph), every estimate is 0, which is still a
+/// lower bound but no longer tells dead states apart.
+public class DistanceHeuristic {
+    public static final int UNREACHABLE = -1;
+
+    private final StateEncoder encoder;
+    private final LongIntHashMap distances;
+    private final boolean complete;
+    private final long stateCount;
+
+    public DistanceHeuristic(CompiledLevel level) {
+        this(level, level.getRelaxedGraph());
+    }
+
+    /**
+     * @param level The level
+     * @param graph The level's relaxed graph
+     */
+    public DistanceHeuristic(CompiledLevel level, RelaxedGraph graph) {
+        encoder = level.getEncoder();
+        complete = graph.isComplete();
+        // Without the whole graph nothing is known, and every placement gets the bound of 0
+        stateCount = complete ? graph.size() : 2L * level.getCellCount() * level.getCellCount();
+        int nodeCount = graph.size();
+        distances = new LongIntHashMap(Math.max(16, nodeCount), UNREACHABLE);
+        int goalIndex = graph.getGoalIndex();
+        if (goalIndex == -1)
+            return;
+
+        // Relaxed moves can't be run backwards directly because of teleports, so the graph's moves are grouped by
+        // where they lead to list the predecessors of every placement
+        int edgeCount = graph.getEdgeCount();
+        int[] offsets = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; ++e)
+            ++offsets[graph.getEdgeTarget(e) + 1];
+        for (int i = 0; i < nodeCount; ++i)
+            offsets[i + 1] += offsets[i];
+        int[] predecessors = new int[edgeCount];
+        int[] fill = Arrays.copyOf(offsets, nodeCount);
+        for (int i = 0; i < nodeCount; ++i)
+            for (int e = graph.getEdgeStart(i); e < graph.getEdgeStart(i + 1); ++e)
+                predecessors[fill[graph.getEdgeTarget(e)]++] = i;
+
+        // Breadth-first search backwards from the goal
+        int[] distance = new int[nodeCount];
+        Arrays.fill(distance, UNREACHABLE);
+        int[] queue = new int[nodeCount];
+        int head = 0, tail = 0;
+        distance[goalIndex] = 0;
+        queue[tail++] = goalIndex;
+        while (head < tail) {
+            int node = queue[head++];
+            distances.put(graph.getPlacement(node), distance[node]);
+            for (int p = offsets[node]; p < offsets[node + 1]; ++p) {
+                int predecessor = predecessors[p];
+                if (distance[predecessor] == UNREACHABLE) {
+                    distance[predecessor] = distance[node] + 1;
+                    queue[tail++] = predecessor;
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates how many moves are left from a state
+     * @param key The packed state key
+     * @return A lower bound on the remaining moves, or UNREACHABLE if the goal can't be reached from this state
+     */
+    public int estimate(long key) {
+        return complete ? distances.get(encoder.placement(key)) : 0;
+    }
+
+    /** @return Whether the relaxed level was small enough to work out any distances */
+    public boolean isComplete() { return complete; }
+
+    /** @return How many relaxed states can reach the goal, which is 0 if the heuristic isn't complete */
+    public int size() { return distances.size(); }
+
+    /**
+     * @return How many relaxed states can be reached from the start, or an upper bound on it if the heuristic isn't
+     *         complete
+     */
+    public long getStateCount() { return stateCount; }
+}
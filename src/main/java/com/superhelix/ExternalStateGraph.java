@@ -0,0 +1,395 @@
+package com.superhelix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/// Breadth-first search that keeps its layers on disk, for levels whose state space doesn't fit in the heap.
+/// Every layer is a temp file of packed keys in ascending order. While a layer is expanded, its children are collected
+/// in a buffer that starts small and doubles up to the memory budget, and every time the buffer is full at that size
+/// it's sorted and written out as a run. Once the layer is done, the runs are merged together with every earlier layer,
+/// and only the children that none of them contain make up the next layer (delayed duplicate detection). To keep the
+/// number of open files down, every MAX_LAYER_READERS layers the older layers are also merged into one visited file,
+/// which the merge reads instead of them.
+/// Nothing remembers how a state was reached, so the path is rebuilt by scanning the layers again from the goal
+/// backwards, each time looking for a state whose children include the one found last.
+public class ExternalStateGraph {
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+    public static final long MIN_MEMORY_BUDGET = 1L << 20;
+
+    /// How many keys are mapped at a time while reading a file
+    private static final int WINDOW_KEYS = 1 << 20;
+    /// How many keys are buffered before writing them to a file
+    private static final int WRITE_BUFFER_KEYS = 1 << 13;
+    /// How many children the buffer holds before it first has to grow
+    private static final int INITIAL_BUFFER_KEYS = 1 << 12;
+    /// How many layers the merge reads one by one before they're folded into the visited file
+    private static final int MAX_LAYER_READERS = 16;
+
+    /// Reads a file of keys in order through a sliding memory-mapped window
+    private static class KeyReader implements Closeable {
+        private final FileChannel channel;
+        private final long count;
+        private long position;
+        private LongBuffer window;
+        private long next;
+
+        KeyReader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            count = channel.size() / Long.BYTES;
+            advance();
+        }
+
+        boolean hasNext() { return position <= count; }
+
+        long peek() { return next; }
+
+        long next() throws IOException {
+            long key = next;
+            advance();
+            return key;
+        }
+
+        private void advance() throws IOException {
+            if (position++ == count)
+                return;
+            if (window == null || !window.hasRemaining()) {
+                long start = position - 1;
+                int keys = (int) Math.min(WINDOW_KEYS, count - start);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start * Long.BYTES, (long) keys * Long.BYTES)
+                        .asLongBuffer();
+            }
+            next = window.get();
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+
+    /// Appends keys to a file
+    private static class KeyWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_KEYS * Long.BYTES);
+
+        KeyWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(long key) throws IOException {
+            if (!buffer.hasRemaining())
+                flush();
+            buffer.putLong(key);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    private final CompiledLevel compiled;
+    private final MoveGenerator generator;
+    private final SearchStats stats;
+    private final Path directory;
+    private final int maxBufferKeys;
+    private long[] buffer;
+    private final List<Path> layers = new ArrayList<>();
+    /// Every key of the layers before the first unfolded one, sorted, or null before the first fold
+    private Path visitedFile;
+    private int unfolded;
+
+    private ExternalStateGraph(CompiledLevel compiled, SearchStats stats, Path directory, long memoryBudget) {
+        this.compiled = compiled;
+        this.stats = stats;
+        this.directory = directory;
+        DeadStateAnalysis deadStates = new DeadStateAnalysis(compiled);
+        stats.setLevelAnalysis(compiled, deadStates);
+        generator = new MoveGenerator(compiled, deadStates);
+        maxBufferKeys = (int) Math.min(memoryBudget / Long.BYTES, Integer.MAX_VALUE - 8);
+        buffer = new long[Math.min(INITIAL_BUFFER_KEYS, maxBufferKeys)];
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param memoryBudget Roughly how many bytes of heap the search may use, which must be at least MIN_MEMORY_BUDGET
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, SearchStats stats, long memoryBudget) {
+        return solve(level, stats, memoryBudget, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Searches for a minimal player move pattern within a budget. Only the buffer counts against the memory limit,
+     * so a memory budget above it stops the search once the buffer grows past the limit.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param memoryBudget Roughly how many bytes of heap the search may use, which must be at least MIN_MEMORY_BUDGET
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public static SolveResult solve(Level level, SearchStats stats, long memoryBudget, SolveBudget budget) {
+        if (memoryBudget < MIN_MEMORY_BUDGET)
+            throw new IllegalArgumentException("The memory budget must be at least %d bytes".formatted(MIN_MEMORY_BUDGET));
+        long startTime = System.nanoTime();
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("bloxorz-layers");
+            return new ExternalStateGraph(new CompiledLevel(level), stats, directory, memoryBudget)
+                    .search(new BudgetTracker(budget, startTime), startTime);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (directory != null)
+                deleteDirectory(directory);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files)
+                Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // Leftover temp files aren't worth failing a solve over
+        }
+    }
+
+    private SolveResult search(BudgetTracker tracker, long startTime) throws IOException {
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+
+        Path startLayer = directory.resolve("layer0");
+        try (KeyWriter writer = new KeyWriter(startLayer)) {
+            writer.write(compiled.getStartKey());
+        }
+        layers.add(startLayer);
+        long visited = 1;
+        long expanded = 0;
+        long frontierSize = 1;
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+
+        search:
+        while (true) {
+            // Expand the newest layer into sorted runs
+            List<Path> runs = new ArrayList<>();
+            int buffered = 0;
+            try (KeyReader reader = new KeyReader(layers.get(layers.size() - 1))) {
+                for (long i = 0; reader.hasNext(); ++i) {
+                    SolveResult.Status limit = tracker.check(expanded + 1, (long) buffer.length * Long.BYTES,
+                            layers.size() - 1, frontierSize - i);
+                    if (limit != null) {
+                        status = limit;
+                        break search;
+                    }
+                    ++expanded;
+                    int count = generator.expand(reader.next(), childKeys, childMoves);
+                    stats.addExpanded();
+                    stats.addGenerated(count);
+                    for (int c = 0; c < count; ++c) {
+                        if (buffered == buffer.length && buffer.length < maxBufferKeys) {
+                            buffer = Arrays.copyOf(buffer, (int) Math.min(maxBufferKeys, 2L * buffer.length));
+                        } else if (buffered == buffer.length) {
+                            runs.add(writeRun(buffered, runs.size()));
+                            buffered = 0;
+                        }
+                        buffer[buffered++] = childKeys[c];
+                    }
+                }
+            }
+            if (buffered > 0)
+                runs.add(writeRun(buffered, runs.size()));
+
+            // Merge the runs against every earlier layer, the folded ones through the visited file
+            Path nextLayer = directory.resolve("layer" + layers.size());
+            long goalKey = -1;
+            boolean foundGoal = false;
+            long layerSize = 0;
+            List<KeyReader> runReaders = new ArrayList<>();
+            List<KeyReader> layerReaders = new ArrayList<>();
+            try (KeyWriter writer = new KeyWriter(nextLayer)) {
+                for (Path run : runs)
+                    runReaders.add(new KeyReader(run));
+                if (visitedFile != null)
+                    layerReaders.add(new KeyReader(visitedFile));
+                for (Path layer : layers.subList(unfolded, layers.size()))
+                    layerReaders.add(new KeyReader(layer));
+                PriorityQueue<KeyReader> children = queueOf(runReaders);
+                PriorityQueue<KeyReader> seen = queueOf(layerReaders);
+
+                boolean hasPrevious = false;
+                long previous = 0;
+                while (!children.isEmpty()) {
+                    long key = pollNext(children);
+                    if (hasPrevious && key == previous) {
+                        stats.addDuplicates(1);
+                        continue;
+                    }
+                    hasPrevious = true;
+                    previous = key;
+
+                    while (!seen.isEmpty() && seen.peek().peek() < key)
+                        pollNext(seen);
+                    if (!seen.isEmpty() && seen.peek().peek() == key) {
+                        stats.addDuplicates(1);
+                        continue;
+                    }
+
+                    writer.write(key);
+                    ++layerSize;
+                    if (compiled.isGoal(key)) {
+                        goalKey = key;
+                        foundGoal = true;
+                        break;
+                    }
+                }
+            } finally {
+                for (KeyReader reader : runReaders)
+                    reader.close();
+                for (KeyReader reader : layerReaders)
+                    reader.close();
+                for (Path run : runs)
+                    Files.deleteIfExists(run);
+            }
+            visited += layerSize;
+
+            if (foundGoal) {
+                stats.setVisitedSize(visited);
+                stats.setPrunedStates(generator.getPrunedCount());
+                stats.setSearchNanos(System.nanoTime() - startTime);
+                return new SolveResult(SolveResult.Status.SOLVED, reconstructMovePattern(goalKey));
+            }
+            if (layerSize == 0)
+                break;
+            stats.updatePeakQueueSize(layerSize);
+            layers.add(nextLayer);
+            frontierSize = layerSize;
+            if (layers.size() - unfolded == MAX_LAYER_READERS)
+                foldLayers();
+        }
+        stats.setVisitedSize(visited);
+        stats.setPrunedStates(generator.getPrunedCount());
+        stats.setSearchNanos(System.nanoTime() - startTime);
+
+        return new SolveResult(status, new ArrayList<>());
+    }
+
+    /**
+     * Merges the visited file and every unfolded layer into a new visited file. The layers themselves are kept, since
+     * rebuilding the path needs them one by one.
+     */
+    private void foldLayers() throws IOException {
+        Path folded = directory.resolve("visited" + layers.size());
+        List<KeyReader> readers = new ArrayList<>();
+        try (KeyWriter writer = new KeyWriter(folded)) {
+            if (visitedFile != null)
+                readers.add(new KeyReader(visitedFile));
+            for (Path layer : layers.subList(unfolded, layers.size()))
+                readers.add(new KeyReader(layer));
+            // No key is in two layers, so there's nothing to drop
+            PriorityQueue<KeyReader> queue = queueOf(readers);
+            while (!queue.isEmpty())
+                writer.write(pollNext(queue));
+        } finally {
+            for (KeyReader reader : readers)
+                reader.close();
+        }
+        if (visitedFile != null)
+            Files.deleteIfExists(visitedFile);
+        visitedFile = folded;
+        unfolded = layers.size();
+    }
+
+    /**
+     * Sorts the start of the buffer and writes it to a run file without duplicates
+     * @param size How many keys are buffered
+     * @param index Which run of the layer this is
+     * @return The run file
+     */
+    private Path writeRun(int size, int index) throws IOException {
+        Arrays.sort(buffer, 0, size);
+        Path run = directory.resolve("run" + index);
+        try (KeyWriter writer = new KeyWriter(run)) {
+            for (int i = 0; i < size; ++i) {
+                if (i == 0 || buffer[i] != buffer[i - 1])
+                    writer.write(buffer[i]);
+                else
+                    stats.addDuplicates(1);
+            }
+        }
+        return run;
+    }
+
+    private static PriorityQueue<KeyReader> queueOf(List<KeyReader> readers) {
+        PriorityQueue<KeyReader> queue = new PriorityQueue<>(Math.max(1, readers.size()),
+                Comparator.comparingLong(KeyReader::peek));
+        for (KeyReader reader : readers)
+            if (reader.hasNext())
+                queue.add(reader);
+        return queue;
+    }
+
+    /**
+     * Takes the smallest key out of a queue of readers
+     */
+    private static long pollNext(PriorityQueue<KeyReader> queue) throws IOException {
+        KeyReader reader = queue.poll();
+        long key = reader.next();
+        if (reader.hasNext())
+            queue.add(reader);
+        return key;
+    }
+
+    /**
+     * Walks the layers backwards from the goal, finding a parent of each state in the layer before it
+     * @param goalKey The goal state, which is one move past the last layer
+     * @return The move descriptions from the start to the goal
+     */
+    private List<String> reconstructMovePattern(long goalKey) throws IOException {
+        long startTime = System.nanoTime();
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+        List<String> movePattern = new ArrayList<>();
+
+        long key = goalKey;
+        for (int depth = layers.size() - 1; depth >= 0; --depth) {
+            Move move = null;
+            try (KeyReader reader = new KeyReader(layers.get(depth))) {
+                while (move == null && reader.hasNext()) {
+                    long parent = reader.next();
+                    int count = generator.expand(parent, childKeys, childMoves);
+                    for (int c = 0; c < count && move == null; ++c) {
+                        if (childKeys[c] == key) {
+                            move = Move.fromOrdinal(childMoves[c]);
+                            key = parent;
+                        }
+                    }
+                }
+            }
+            if (move == null)
+                throw new IllegalStateException("Layer %d has no parent of a state in the layer after it".formatted(depth));
+            movePattern.add(move.description());
+        }
+        Collections.reverse(movePattern);
+        stats.setReconstructionNanos(System.nanoTime() - startTime);
+        return movePattern;
+    }
+}
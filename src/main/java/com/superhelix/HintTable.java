@@ -0,0 +1,286 @@
+package com.superhelix;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/// The distance to the goal and the best next move from every state a level can reach, for answering hints.
+/// The states are enumerated forwards from the start once, and distances are then found with a breadth-first sweep
+/// backwards from every goal state. Each state's hint is the first move, in the usual move order, to a state one move
+/// closer, so following hints from the start gives a minimal solution.
+///
+/// File layout (big-endian): magic, format version, solver version, the level's 16-byte key, state count, and then
+/// every state's key, distance and move ordinal, each as its own array.
+public class HintTable {
+    /// The distance of states that can't reach the goal
+    public static final int UNSOLVABLE = -1;
+
+    private static final int MAGIC = 0x42584854; // "BXHT"
+    private static final int FORMAT_VERSION = 2;
+    private static final byte NO_MOVE = -1;
+
+    /**
+     * What to do next from a state
+     * @param move The best move, or null if the state is at the goal or can't reach it
+     * @param distance How many moves are left, or UNSOLVABLE
+     */
+    public record Hint(Move move, int distance) { }
+
+    private final CompiledLevel compiled;
+    private final long[] keys;
+    private final int[] distances;
+    private final byte[] moves;
+    private final LongIntHashMap indices;
+
+    private HintTable(CompiledLevel compiled, long[] keys, int[] distances, byte[] moves) {
+        this.compiled = compiled;
+        this.keys = keys;
+        this.distances = distances;
+        this.moves = moves;
+        indices = new LongIntHashMap(keys.length, -1);
+        for (int i = 0; i < keys.length; ++i)
+            indices.put(keys[i], i);
+    }
+
+    /**
+     * Analyzes every state of a level that can be reached from its start
+     * @param level The level
+     * @return The table
+     */
+    public static HintTable build(Level level) {
+        CompiledLevel compiled = new CompiledLevel(level);
+        MoveGenerator generator = new MoveGenerator(compiled);
+        LongIntHashMap indices = new LongIntHashMap(1024, -1);
+        long[] keys = new long[1024];
+        int nodeCount = 0;
+        int[] edgeFrom = new int[1024], edgeTo = new int[1024];
+        byte[] edgeMove = new byte[1024];
+        int edgeCount = 0;
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+
+        // Moves can't be run backwards directly because of switches and teleports, so the graph is enumerated
+        // forwards and its edges are reversed afterwards. The game ends on the goal, so goal states aren't expanded.
+        keys[nodeCount] = compiled.getStartKey();
+        indices.put(keys[nodeCount++], 0);
+        for (int i = 0; i < nodeCount; ++i) {
+            if (compiled.isGoal(keys[i]))
+                continue;
+            int childCount = generator.expand(keys[i], childKeys, childMoves);
+            for (int c = 0; c < childCount; ++c) {
+                int childIndex = indices.get(childKeys[c]);
+                if (childIndex == -1) {
+                    if (nodeCount == keys.length)
+                        keys = Arrays.copyOf(keys, nodeCount * 2);
+                    childIndex = nodeCount;
+                    keys[nodeCount++] = childKeys[c];
+                    indices.put(childKeys[c], childIndex);
+                }
+                if (edgeCount == edgeFrom.length) {
+                    edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+                    edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+                    edgeMove = Arrays.copyOf(edgeMove, edgeCount * 2);
+                }
+                edgeFrom[edgeCount] = i;
+                edgeTo[edgeCount] = childIndex;
+                edgeMove[edgeCount] = childMoves[c];
+                ++edgeCount;
+            }
+        }
+
+        // Group the edges by their destination so predecessors can be listed
+        int[] offsets = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; ++e)
+            ++offsets[edgeTo[e] + 1];
+        for (int i = 0; i < nodeCount; ++i)
+            offsets[i + 1] += offsets[i];
+        int[] predecessors = new int[edgeCount];
+        int[] fill = Arrays.copyOf(offsets, nodeCount);
+        for (int e = 0; e < edgeCount; ++e)
+            predecessors[fill[edgeTo[e]]++] = edgeFrom[e];
+
+        // Breadth-first search backwards from every goal state
+        int[] distance = new int[nodeCount];
+        Arrays.fill(distance, UNSOLVABLE);
+        int[] queue = new int[nodeCount];
+        int head = 0, tail = 0;
+        for (int i = 0; i < nodeCount; ++i) {
+            if (compiled.isGoal(keys[i])) {
+                distance[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int p = offsets[node]; p < offsets[node + 1]; ++p) {
+                int predecessor = predecessors[p];
+                if (distance[predecessor] == UNSOLVABLE) {
+                    distance[predecessor] = distance[node] + 1;
+                    queue[tail++] = predecessor;
+                }
+            }
+        }
+
+        // Edges are in expansion order, so the first edge that gets closer is the first such move
+        byte[] move = new byte[nodeCount];
+        Arrays.fill(move, NO_MOVE);
+        for (int e = 0; e < edgeCount; ++e) {
+            int from = edgeFrom[e];
+            if (move[from] == NO_MOVE && distance[from] > 0 && distance[edgeTo[e]] == distance[from] - 1)
+                move[from] = edgeMove[e];
+        }
+
+        return new HintTable(compiled, Arrays.copyOf(keys, nodeCount), distance, move);
+    }
+
+    /**
+     * Looks up the hint for a state
+     * @param key The packed state key
+     * @return The hint, or null if the state can't be reached from the start
+     */
+    public Hint hint(long key) {
+        int index = indices.get(key);
+        if (index == -1)
+            return null;
+        return new Hint((moves[index] != NO_MOVE) ? Move.fromOrdinal(moves[index]) : null, distances[index]);
+    }
+
+    /**
+     * Looks up the hint for a player and the states of the level's tile groups
+     * @param player The player
+     * @param states The map from tile group identifiers to whether they're on, in the same form as Level.applyState
+     *               takes; groups that are missing are in their starting state
+     * @return The hint, or null if the state can't be reached from the start
+     */
+    public Hint hint(Player player, Map<Character, Boolean> states) {
+        return hint(player, compiled.bridgesOf(states));
+    }
+
+    /**
+     * Looks up the hint for a player and bridge states
+     * @param player The player
+     * @param bridges The bridge mask, with bits numbered by CompiledLevel.getBridgeId
+     * @return The hint, or null if the state can't be reached from the start
+     */
+    Hint hint(Player player, long bridges) {
+        return hint(compiled.getEncoder().encode(player, bridges));
+    }
+
+    /**
+     * Follows the hints from the start
+     * @return The move descriptions of a minimal solution, or an empty list if there is none
+     */
+    public List<String> solution() {
+        List<String> movePattern = new ArrayList<>();
+        MoveGenerator generator = new MoveGenerator(compiled);
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+
+        long key = compiled.getStartKey();
+        Hint hint = hint(key);
+        while (hint.move() != null) {
+            int count = generator.expand(key, childKeys, childMoves);
+            for (int c = 0; c < count; ++c) {
+                if (childMoves[c] == hint.move().ordinal()) {
+                    key = childKeys[c];
+                    break;
+                }
+            }
+            movePattern.add(hint.move().description());
+            hint = hint(key);
+        }
+        return movePattern;
+    }
+
+    /** @return How many states can be reached from the start */
+    public int size() { return keys.length; }
+
+    /** @return How many of those states can reach the goal */
+    public int solvableCount() {
+        int count = 0;
+        for (int distance : distances)
+            if (distance != UNSOLVABLE)
+                ++count;
+        return count;
+    }
+
+    /** @return The largest distance to the goal of any state that can reach it */
+    public int maxDistance() {
+        int max = UNSOLVABLE;
+        for (int distance : distances)
+            max = Math.max(max, distance);
+        return max;
+    }
+
+    public CompiledLevel getCompiledLevel() { return compiled; }
+
+    /**
+     * Writes the table to a file, replacing the file in one step
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public void save(Path file) throws IOException {
+        SolutionCache.Key levelKey = SolutionCache.keyOf(compiled.getLevel());
+        ByteBuffer buffer = ByteBuffer.allocate(4 * Integer.BYTES + 2 * Long.BYTES
+                + keys.length * (Long.BYTES + Integer.BYTES + 1));
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(SolutionCache.SOLVER_VERSION);
+        buffer.putLong(levelKey.high()).putLong(levelKey.low()).putInt(keys.length);
+        buffer.asLongBuffer().put(keys);
+        buffer.position(buffer.position() + keys.length * Long.BYTES);
+        buffer.asIntBuffer().put(distances);
+        buffer.position(buffer.position() + keys.length * Integer.BYTES);
+        buffer.put(moves);
+        buffer.flip();
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a table back from a file
+     * @param file The file
+     * @param level The level the table has to belong to
+     * @return The table, or null if the file doesn't exist, is damaged, or was made for another level or solver
+     * @throws IOException If the file exists but can't be read
+     */
+    public static HintTable load(Path file, Level level) throws IOException {
+        if (!Files.isRegularFile(file))
+            return null;
+
+        SolutionCache.Key levelKey = SolutionCache.keyOf(level);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getInt() != SolutionCache.SOLVER_VERSION
+                    || buffer.getLong() != levelKey.high() || buffer.getLong() != levelKey.low())
+                return null;
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() != (long) count * (Long.BYTES + Integer.BYTES + 1))
+                return null;
+            long[] keys = new long[count];
+            int[] distances = new int[count];
+            byte[] moves = new byte[count];
+            buffer.asLongBuffer().get(keys);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            buffer.asIntBuffer().get(distances);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            buffer.get(moves);
+            return new HintTable(new CompiledLevel(level), keys, distances, moves);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// Iterative-deepening A*, which trades repeated work for memory that doesn't grow with the state space.
+/// Each iteration is a depth-first search that cuts off states whose moves taken plus DistanceHeuristic estimate
+/// exceed a bound, and the next iteration raises the bound to the smallest estimate that was cut off. The heuristic
+/// never overestimates, so the first goal found is at the end of a minimal solution.
+///
+/// The path is kept on an explicit stack of keys and their children, so moving deeper pushes a key and backing up pops
+/// it, and nothing is allocated per state. A transposition table of fixed size remembers the fewest moves each state
+/// was reached in during the current iteration, so states reached again in as many moves or more (including cycles)
+/// aren't searched twice. When the search backs up from a state, the table also remembers the cheapest cut-off below
+/// it as a better lower bound for that state, so later iterations don't search the same dead ends again before they
+/// can pay off. Every state has a bucket of four slots, and when they're all taken, a new state replaces the one
+/// reached in the most moves, which only costs repeated work.
+public class IdaStarSearch {
+    /// Key, moves taken, iteration stamp and learned bound
+    private static final int ENTRY_BYTES = Long.BYTES + 3 * Integer.BYTES;
+    /// Larger than any real bound, and small enough that adding a depth to it can't overflow
+    private static final int INFINITE = Integer.MAX_VALUE / 2;
+    private static final int MIN_TABLE_SIZE = 1 << 10;
+    /// How many slots a state may be stored in
+    private static final int BUCKET_SIZE = 4;
+    /// What iterate returns when the budget ran out
+    private static final int STOPPED = -2;
+
+    private final CompiledLevel compiled;
+    private final DistanceHeuristic heuristic;
+    private final MoveGenerator generator;
+
+    private final long[] tableKeys;
+    private final int[] tableCosts;
+    private final int[] tableStamps;
+    private final int[] tableBounds;
+    private final int tableMask;
+    private int stamp;
+
+    private long[] pathKeys = new long[64];
+    private byte[] pathMoves = new byte[64];
+    private long[] stackKeys = new long[64 * MoveGenerator.MAX_CHILDREN];
+    private byte[] stackMoves = new byte[64 * MoveGenerator.MAX_CHILDREN];
+    private int[] childCounts = new int[64];
+    private int[] nextChild = new int[64];
+    /// The smallest moves taken plus estimate that was cut off below each state of the path
+    private int[] lowestBelow = new int[64];
+    private final long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+    private final byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+    /// The length of the path once an iteration has reached the goal
+    private int goalDepth;
+
+    private final BudgetTracker tracker;
+    private long expanded;
+    /// The limit that stopped the search, or null
+    private SolveResult.Status limit;
+
+    private IdaStarSearch(CompiledLevel compiled, DistanceHeuristic heuristic, long memoryBudget,
+                          BudgetTracker tracker) {
+        this.compiled = compiled;
+        this.tracker = tracker;
+        this.heuristic = heuristic;
+        generator = new MoveGenerator(compiled);
+        int tableSize = (int) Math.max(MIN_TABLE_SIZE,
+                Long.highestOneBit(Math.min(1L << 30, memoryBudget / ENTRY_BYTES)));
+        tableKeys = new long[tableSize];
+        tableCosts = new int[tableSize];
+        tableStamps = new int[tableSize];
+        tableBounds = new int[tableSize];
+        tableMask = tableSize - 1;
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @param memoryBudget Roughly how many bytes the transposition table may take up
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, long memoryBudget) {
+        return generateMinimalMovePattern(level, new SearchStats(), memoryBudget);
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * Nodes are counted over every iteration, the peak queue size is the deepest the path got, and visited states is
+     * how many states the table held at the end.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param memoryBudget Roughly how many bytes the transposition table may take up
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, SearchStats stats, long memoryBudget) {
+        return solve(level, stats, memoryBudget, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Searches for a minimal player move pattern within a budget. The expansion limit counts over every iteration,
+     * and only the transposition table counts against the memory limit, so a memory budget above it stops the search
+     * before it starts.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param memoryBudget Roughly how many bytes the transposition table may take up
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public static SolveResult solve(Level level, SearchStats stats, long memoryBudget, SolveBudget budget) {
+        long startTime = System.nanoTime();
+        CompiledLevel compiled = new CompiledLevel(level);
+        DeadStateAnalysis deadStates = new DeadStateAnalysis(compiled);
+        stats.setLevelAnalysis(compiled, deadStates);
+        return new IdaStarSearch(compiled, deadStates.getDistances(), memoryBudget,
+                new BudgetTracker(budget, startTime)).search(stats, startTime);
+    }
+
+    private SolveResult search(SearchStats stats, long startTime) {
+        long startKey = compiled.getStartKey();
+        int bound = heuristic.estimate(startKey);
+        // No minimal solution can be longer than the number of states, so a bound beyond that means there is none
+        long maxBound = heuristic.getStateCount() << Math.min(compiled.getBridgeCount(), 32);
+        List<String> movePattern = new ArrayList<>();
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+        while (bound != DistanceHeuristic.UNREACHABLE && bound <= maxBound) {
+            ++stamp;
+            int result = iterate(startKey, bound, stats);
+            if (result == STOPPED) {
+                status = limit;
+                break;
+            }
+            if (result == -1) {
+                status = SolveResult.Status.SOLVED;
+                for (int depth = 1; depth <= goalDepth; ++depth)
+                    movePattern.add(Move.fromOrdinal(pathMoves[depth]).description());
+                break;
+            }
+            bound = result;
+        }
+
+        int stored = 0;
+        for (int s : tableStamps)
+            if (s == stamp)
+                ++stored;
+        stats.setVisitedSize(stored);
+        stats.setSearchNanos(System.nanoTime() - startTime);
+        return new SolveResult(status, movePattern);
+    }
+
+    /**
+     * Runs one depth-first iteration
+     * @param startKey The start state
+     * @param bound The largest moves taken plus estimate to search
+     * @param stats The counters to fill in
+     * @return -1 if the goal was found, STOPPED if the budget ran out, otherwise the bound for the next iteration, or
+     * UNREACHABLE if nothing was cut off
+     */
+    private int iterate(long startKey, int bound, SearchStats stats) {
+        int nextBound = INFINITE;
+        int depth = 0;
+        if (outOfBudget(depth))
+            return STOPPED;
+        pathKeys[0] = startKey;
+        visit(startKey, 0);
+        push(0, stats);
+
+        while (depth >= 0) {
+            if (nextChild[depth] == childCounts[depth]) {
+                // Every way on from here costs at least the cheapest cut-off below, which the next visit can use
+                learn(pathKeys[depth], lowestBelow[depth] - depth);
+                if (depth > 0)
+                    lowestBelow[depth - 1] = Math.min(lowestBelow[depth - 1], lowestBelow[depth]);
+                --depth;
+                continue;
+            }
+            int slot = depth * MoveGenerator.MAX_CHILDREN + nextChild[depth]++;
+            long child = stackKeys[slot];
+            int cost = depth + 1;
+            int estimate = estimate(child);
+            if (estimate == INFINITE)
+                continue;
+            if (cost + estimate > bound) {
+                nextBound = Math.min(nextBound, cost + estimate);
+                lowestBelow[depth] = Math.min(lowestBelow[depth], cost + estimate);
+                continue;
+            }
+            if (compiled.isGoal(child)) {
+                pathMoves[cost] = stackMoves[slot];
+                goalDepth = cost;
+                return -1;
+            }
+            if (!visit(child, cost)) {
+                stats.addDuplicates(1);
+                lowestBelow[depth] = Math.min(lowestBelow[depth], cost + estimate);
+                continue;
+            }
+            if (outOfBudget(cost))
+                return STOPPED;
+
+            depth = cost;
+            if (depth == pathKeys.length)
+                grow();
+            pathKeys[depth] = child;
+            pathMoves[depth] = stackMoves[slot];
+            push(depth, stats);
+        }
+        return (nextBound == INFINITE) ? DistanceHeuristic.UNREACHABLE : nextBound;
+    }
+
+    /**
+     * Checks the budget before expanding a state, and remembers the limit that was hit
+     * @param depth The depth of the state
+     * @return Whether the search has to stop
+     */
+    private boolean outOfBudget(int depth) {
+        limit = tracker.check(expanded + 1, (long) tableKeys.length * ENTRY_BYTES, depth, depth + 1);
+        return limit != null;
+    }
+
+    /**
+     * Expands the state at a depth of the path into its slice of the stack
+     */
+    private void push(int depth, SearchStats stats) {
+        int count = generator.expand(pathKeys[depth], childKeys, childMoves);
+        System.arraycopy(childKeys, 0, stackKeys, depth * MoveGenerator.MAX_CHILDREN, count);
+        System.arraycopy(childMoves, 0, stackMoves, depth * MoveGenerator.MAX_CHILDREN, count);
+        childCounts[depth] = count;
+        nextChild[depth] = 0;
+        lowestBelow[depth] = INFINITE;
+        ++expanded;
+        stats.addExpanded();
+        stats.addGenerated(childCounts[depth]);
+        stats.updatePeakQueueSize(depth + 1);
+    }
+
+    /**
+     * @return A lower bound on the moves left from a state, from the heuristic or an earlier iteration, or INFINITE
+     * if the goal can't be reached from it
+     */
+    private int estimate(long key) {
+        int estimate = heuristic.estimate(key);
+        if (estimate == DistanceHeuristic.UNREACHABLE)
+            return INFINITE;
+        int slot = find(key);
+        return (slot != -1) ? Math.max(estimate, tableBounds[slot]) : estimate;
+    }
+
+    /**
+     * Raises the lower bound remembered for a state
+     */
+    private void learn(long key, int bound) {
+        int slot = find(key);
+        if (slot != -1)
+            tableBounds[slot] = Math.max(tableBounds[slot], Math.min(bound, INFINITE));
+    }
+
+    /**
+     * Records that a state was reached, unless it was already reached in as few moves during this iteration
+     * @return Whether the state should be searched
+     */
+    private boolean visit(long key, int cost) {
+        int slot = find(key);
+        if (slot != -1) {
+            if (tableStamps[slot] == stamp && tableCosts[slot] <= cost)
+                return false;
+        } else {
+            slot = victim(key);
+            tableKeys[slot] = key;
+            tableBounds[slot] = 0;
+        }
+        tableCosts[slot] = cost;
+        tableStamps[slot] = stamp;
+        return true;
+    }
+
+    /**
+     * @return The slot holding a state, or -1 if it isn't in the table
+     */
+    private int find(long key) {
+        int bucket = (int) LongHashSet.mix(key) & tableMask & -BUCKET_SIZE;
+        for (int slot = bucket; slot < bucket + BUCKET_SIZE; ++slot)
+            if (tableKeys[slot] == key && tableStamps[slot] != 0)
+                return slot;
+        return -1;
+    }
+
+    /**
+     * Picks the slot a new state replaces: one left over from an earlier iteration if there is any, and otherwise the
+     * one reached in the most moves, whose subtree is the cheapest to search again
+     */
+    private int victim(long key) {
+        int bucket = (int) LongHashSet.mix(key) & tableMask & -BUCKET_SIZE;
+        int victim = bucket;
+        for (int slot = bucket; slot < bucket + BUCKET_SIZE; ++slot) {
+            if (tableStamps[slot] != stamp)
+                return slot;
+            if (tableCosts[slot] > tableCosts[victim])
+                victim = slot;
+        }
+        return victim;
+    }
+
+    private void grow() {
+        int length = pathKeys.length * 2;
+        pathKeys = Arrays.copyOf(pathKeys, length);
+        pathMoves = Arrays.copyOf(pathMoves, length);
+        childCounts = Arrays.copyOf(childCounts, length);
+        nextChild = Arrays.copyOf(nextChild, length);
+        lowestBelow = Arrays.copyOf(lowestBelow, length);
+        stackKeys = Arrays.copyOf(stackKeys, length * MoveGenerator.MAX_CHILDREN);
+        stackMoves = Arrays.copyOf(stackMoves, length * MoveGenerator.MAX_CHILDREN);
+    }
+}
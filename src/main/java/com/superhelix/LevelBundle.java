@@ -0,0 +1,81 @@
+package com.superhelix;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/// Many compiled levels in one memory-mapped file (see LevelFormat for the layout).
+/// Only the index is read up front, and each level is decoded from the mapping when it's loaded, so opening a bundle
+/// costs the same however many levels it holds. Levels can be loaded from several threads at once.
+public class LevelBundle {
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final String[] names;
+    private final long[] offsets;
+    private final int[] lengths;
+
+    private LevelBundle(Path file, MappedByteBuffer buffer, String[] names, long[] offsets, int[] lengths) {
+        this.file = file;
+        this.buffer = buffer;
+        this.names = names;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Maps a bundle file and reads its index
+     * @param file The file, as written by LevelFormat.writeBundle
+     * @return The bundle
+     * @throws IOException If the file can't be read, or isn't a bundle of this format version
+     */
+    public static LevelBundle open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        LevelFormat.checkHeader(buffer, LevelFormat.BUNDLE_MAGIC, file);
+        try {
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining())
+                throw new IOException("The bundle '%s' is damaged".formatted(file));
+            String[] names = new String[count];
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; ++i) {
+                byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(name);
+                names[i] = new String(name, StandardCharsets.UTF_8);
+                offsets[i] = buffer.getLong();
+                lengths[i] = buffer.getInt();
+                if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] + lengths[i] > buffer.capacity())
+                    throw new IOException("The bundle '%s' is damaged".formatted(file));
+            }
+            return new LevelBundle(file, buffer, names, offsets, lengths);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The bundle '%s' is damaged".formatted(file), e);
+        }
+    }
+
+    public int size() { return names.length; }
+
+    public String getName(int index) { return names[index]; }
+
+    /**
+     * Decodes one level of the bundle
+     * @param index Which level
+     * @return The level
+     * @throws IOException If the level is damaged
+     */
+    public Level load(int index) throws IOException {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit((int) (offsets[index] + lengths[index])).position((int) offsets[index]);
+        return LevelFormat.decode(slice.slice());
+    }
+
+    public Path getFile() { return file; }
+}
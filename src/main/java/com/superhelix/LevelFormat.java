@@ -0,0 +1,240 @@
+package com.superhelix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/// A binary form of Level that loads without any text parsing, for levels that are solved over and over.
+/// A level file is the magic "BXLV", the format version and one encoded level. A bundle is the magic "BXLB", the
+/// format version, the level count, an index of every level's name, offset and length, and then the encoded levels,
+/// so a single level can be decoded straight out of the mapped file (see LevelBundle).
+///
+/// An encoded level (big-endian) is the row count, every row as its length and one Tile ordinal per tile, and then
+/// every TileMetadata in identifier order: its identifier, starting bridge state, positions and switch attribute.
+public class LevelFormat {
+    /// Bump this whenever the layout changes, so old files are rejected instead of misread
+    public static final int FORMAT_VERSION = 1;
+
+    static final int LEVEL_MAGIC = 0x42584c56; // "BXLV"
+    static final int BUNDLE_MAGIC = 0x42584c42; // "BXLB"
+
+    /**
+     * Encodes a level without any header
+     * @param level The level
+     * @return The encoded level
+     */
+    public static byte[] encode(Level level) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(level.tiles().size());
+            for (List<Tile> row : level.tiles()) {
+                out.writeInt(row.size());
+                for (Tile tile : row)
+                    out.writeByte(tile.ordinal());
+            }
+
+            out.writeInt(level.tilesMetadata().size());
+            for (TileMetadata metadata : level.tilesMetadata().values()) {
+                out.writeChar(metadata.getId());
+                out.writeBoolean(metadata.getStartingBridgeState());
+                writePositions(out, metadata.getPositions());
+                SwitchAttribute attr = metadata.getSwitchAttribute();
+                out.writeBoolean(attr != null);
+                if (attr == null)
+                    continue;
+                out.writeByte(attr.activationType().ordinal());
+                out.writeInt(attr.bridgeActions().size());
+                for (TileAction action : attr.bridgeActions()) {
+                    out.writeChar(action.tileId());
+                    out.writeByte(action.effect().ordinal());
+                }
+                writePositions(out, (attr.teleportLocations() != null) ? Arrays.asList(attr.teleportLocations()) : null);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Can't happen when writing to memory
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a level written by encode
+     * @param buffer The encoded level, which is read from its position onwards
+     * @return The level
+     * @throws IOException If the data is damaged
+     */
+    public static Level decode(ByteBuffer buffer) throws IOException {
+        try {
+            Tile[] tileValues = Tile.values();
+            int rows = count(buffer);
+            List<List<Tile>> tiles = new ArrayList<>(rows);
+            for (int y = 0; y < rows; ++y) {
+                int length = count(buffer);
+                List<Tile> row = new ArrayList<>(length);
+                for (int x = 0; x < length; ++x)
+                    row.add(tileValues[buffer.get()]);
+                tiles.add(row);
+            }
+
+            Map<Character, TileMetadata> tilesMetadata = new TreeMap<>();
+            int metadataCount = count(buffer);
+            for (int i = 0; i < metadataCount; ++i) {
+                char id = buffer.getChar();
+                boolean startingBridgeState = buffer.get() != 0;
+                List<Position> positions = readPositions(buffer);
+                SwitchAttribute attr = null;
+                if (buffer.get() != 0) {
+                    ActivationType activationType = ActivationType.values()[buffer.get()];
+                    int actionCount = count(buffer);
+                    List<TileAction> actions = new ArrayList<>(actionCount);
+                    for (int a = 0; a < actionCount; ++a)
+                        actions.add(new TileAction(buffer.getChar(), BridgeEffect.values()[buffer.get()]));
+                    List<Position> teleports = readPositions(buffer);
+                    attr = new SwitchAttribute(activationType, actions,
+                            (teleports != null) ? teleports.toArray(new Position[0]) : null);
+                }
+                tilesMetadata.put(id, new TileMetadata(id, attr, startingBridgeState, positions));
+            }
+            return new Level(tiles, tilesMetadata);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("The compiled level is damaged", e);
+        }
+    }
+
+    /**
+     * Writes a single level to a file
+     * @param level The level
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public static void write(Level level, Path file) throws IOException {
+        byte[] encoded = encode(level);
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + encoded.length);
+        buffer.putInt(LEVEL_MAGIC).putInt(FORMAT_VERSION).put(encoded).flip();
+        writeFile(buffer, file);
+    }
+
+    /**
+     * Reads a single level from a file written by write
+     * @param file The file
+     * @return The level
+     * @throws IOException If the file can't be read, or isn't a level file of this format version
+     */
+    public static Level read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkHeader(buffer, LEVEL_MAGIC, file);
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Writes many levels to one bundle file
+     * @param levels The levels by name, in the order they should be stored
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public static void writeBundle(LinkedHashMap<String, Level> levels, Path file) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        List<byte[]> encoded = new ArrayList<>();
+        int indexSize = 0;
+        for (Map.Entry<String, Level> entry : levels.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            encoded.add(encode(entry.getValue()));
+            indexSize += Short.BYTES + name.length + Long.BYTES + Integer.BYTES;
+        }
+
+        long offset = 3 * Integer.BYTES + indexSize;
+        long total = offset;
+        for (byte[] level : encoded)
+            total += level.length;
+        if (total > Integer.MAX_VALUE)
+            throw new IOException("A bundle can't be larger than 2 GB");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) total);
+        buffer.putInt(BUNDLE_MAGIC).putInt(FORMAT_VERSION).putInt(encoded.size());
+        for (int i = 0; i < encoded.size(); ++i) {
+            if (names.get(i).length > 0xffff)
+                throw new IOException("Level name is too long for a bundle");
+            buffer.putShort((short) names.get(i).length).put(names.get(i));
+            buffer.putLong(offset).putInt(encoded.get(i).length);
+            offset += encoded.get(i).length;
+        }
+        for (byte[] level : encoded)
+            buffer.put(level);
+        buffer.flip();
+        writeFile(buffer, file);
+    }
+
+    /**
+     * @param file A file
+     * @return Whether the file starts like a level or bundle file of any format version
+     */
+    public static boolean isCompiled(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) != -1) { }
+            if (magic.hasRemaining())
+                return false;
+            int value = magic.flip().getInt();
+            return value == LEVEL_MAGIC || value == BUNDLE_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void checkHeader(ByteBuffer buffer, int magic, Path file) throws IOException {
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != magic)
+            throw new IOException("'%s' is not a compiled %s file".formatted(file,
+                    (magic == LEVEL_MAGIC) ? "level" : "bundle"));
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("'%s' was written with format version %d, but only %d can be read"
+                    .formatted(file, version, FORMAT_VERSION));
+    }
+
+    private static void writeFile(ByteBuffer buffer, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    private static int count(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining())
+            throw new IOException("The compiled level is damaged");
+        return count;
+    }
+
+    private static void writePositions(DataOutputStream out, List<Position> positions) throws IOException {
+        if (positions == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(positions.size());
+        for (Position pos : positions) {
+            out.writeInt(pos.x());
+            out.writeInt(pos.y());
+        }
+    }
+
+    private static List<Position> readPositions(ByteBuffer buffer) throws IOException {
+        int size = buffer.getInt();
+        if (size == -1)
+            return null;
+        if (size < 0 || size > buffer.remaining())
+            throw new IOException("The compiled level is damaged");
+        List<Position> positions = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i)
+            positions.add(new Position(buffer.getInt(), buffer.getInt()));
+        return positions;
+    }
+}
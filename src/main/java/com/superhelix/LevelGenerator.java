@@ -0,0 +1,297 @@
+package com.superhelix;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/// Writes random levels in the format of levels/LevelSyntax.md, for stress-testing the solver on larger levels than
+/// the bundled ones.
+/// A level is a handful of rectangular platforms joined in a chain by corridors, with the start on the first platform
+/// and the goal on the last. Weak floor, bridges, switches and teleport targets are then scattered over the floor.
+/// Uppercase letters name switches, and lowercase letters name bridges followed by teleport targets, so a level has
+/// at most 26 switches and bridges plus twice its teleports at most 26.
+/// Every level is solved with StateGraph before it's written, and an unsolvable one is thrown away and generated
+/// again, so the output only depends on the options and the seed.
+public class LevelGenerator {
+    private static final String USAGE = """
+            usage: LevelGenerator [options] <output_directory>
+              --count n        levels per size (default 1)
+              --sizes WxH,...  grid sizes (default 20x12)
+              --weak f         fraction of floor that is weak (default 0.1)
+              --switches n     switches per level (default 4)
+              --bridges n      bridges per level (default 4)
+              --hard f         fraction of switches that are hard (default 0.3)
+              --effects list   bridge effects switches may use, from toggle,on,off (default all three)
+              --teleports n    switches that also teleport (default 0)
+              --seed n         random seed (default 1)
+              --attempts n     tries per level before giving up on finding a solvable one (default 50)""";
+
+    /**
+     * What to generate
+     * @param width Columns of the tile matrix
+     * @param height Rows of the tile matrix
+     * @param weakDensity Fraction of plain floor to turn into weak floor
+     * @param switches How many switches to place
+     * @param bridges How many bridges to place
+     * @param hardFraction Fraction of switches that need the player standing upright
+     * @param effects The effects switches may have on bridges
+     * @param teleports How many of the switches also teleport the player
+     */
+    public record Options(int width, int height, double weakDensity, int switches, int bridges, double hardFraction,
+                          List<BridgeEffect> effects, int teleports) {
+        public Options {
+            if (width < 8 || height < 6)
+                throw new IllegalArgumentException("Levels must be at least 8x6");
+            if (switches < 0 || switches > 26)
+                throw new IllegalArgumentException("There can be 0 to 26 switches");
+            if (bridges < 0 || teleports < 0 || teleports > switches || bridges + 2 * teleports > 26)
+                throw new IllegalArgumentException("Bridges and teleport targets share 26 letters, and every teleport "
+                        + "needs a switch");
+            if (switches > teleports && bridges > 0 && effects.isEmpty())
+                throw new IllegalArgumentException("Switches need at least one bridge effect");
+        }
+    }
+
+    /**
+     * A level's two files
+     * @param levelText The contents of the .txt file
+     * @param infoText The contents of the .info file
+     */
+    public record GeneratedLevel(String levelText, String infoText) { }
+
+    private final Options options;
+    private final Random random;
+    private char[][] grid;
+    private final List<int[]> floor = new ArrayList<>();
+
+    private LevelGenerator(Options options, Random random) {
+        this.options = options;
+        this.random = random;
+    }
+
+    /**
+     * Generates a solvable level
+     * @param options What to generate
+     * @param seed The seed, which fully determines the level
+     * @param attempts How many levels to try before giving up
+     * @return The level, or null if none of the attempts was solvable
+     */
+    public static GeneratedLevel generate(Options options, long seed, int attempts) {
+        Random random = new Random(seed);
+        for (int attempt = 0; attempt < attempts; ++attempt) {
+            GeneratedLevel generated = new LevelGenerator(options, random).build();
+            try {
+                Level level = LevelUtils.loadFromText(generated.levelText(), generated.infoText());
+                if (!StateGraph.generateMinimalMovePattern(level).isEmpty())
+                    return generated;
+            } catch (LevelParserException e) {
+                throw new IllegalStateException("Generated an unparsable level: " + e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    private GeneratedLevel build() {
+        int width = options.width(), height = options.height();
+        grid = new char[height][width];
+        for (char[] row : grid)
+            Arrays.fill(row, ' ');
+
+        // Platforms joined in a chain, each one to the one before it
+        int platformCount = Math.max(2, width * height / 120);
+        int[][] centers = new int[platformCount][];
+        for (int i = 0; i < platformCount; ++i) {
+            int w = 3 + random.nextInt(Math.min(6, width - 4));
+            int h = 3 + random.nextInt(Math.min(4, height - 4));
+            int x = random.nextInt(width - w + 1);
+            int y = random.nextInt(height - h + 1);
+            fill(x, y, x + w - 1, y + h - 1, '@');
+            centers[i] = new int[]{x + w / 2, y + h / 2};
+            if (i > 0)
+                connect(centers[i - 1], centers[i]);
+        }
+        for (int y = 0; y < height; ++y)
+            for (int x = 0; x < width; ++x)
+                if (grid[y][x] == '@')
+                    floor.add(new int[]{x, y});
+
+        grid[centers[0][1]][centers[0][0]] = '$';
+        int[] goal = centers[platformCount - 1];
+        if (grid[goal[1]][goal[0]] == '$')
+            goal = new int[]{goal[0] + ((goal[0] + 1 < width) ? 1 : -1), goal[1]};
+        grid[goal[1]][goal[0]] = '^';
+
+        StringBuilder info = new StringBuilder();
+
+        // Bridges are short straight runs of floor, placed before anything else claims the floor
+        List<Character> bridgeIds = new ArrayList<>();
+        for (int i = 0; i < options.bridges(); ++i) {
+            char id = (char) ('a' + i);
+            int[] cell = plainFloor();
+            if (cell == null)
+                break;
+            boolean horizontal = random.nextBoolean();
+            int length = 1 + random.nextInt(3);
+            for (int j = 0; j < length; ++j) {
+                int x = cell[0] + (horizontal ? j : 0), y = cell[1] + (horizontal ? 0 : j);
+                if (x < width && y < height && grid[y][x] == '@')
+                    grid[y][x] = id;
+            }
+            bridgeIds.add(id);
+            if (random.nextBoolean())
+                info.append("%c: off\n".formatted(id));
+        }
+
+        // Weak floor, which can't be a switch or a teleport target
+        for (int[] cell : floor)
+            if (grid[cell[1]][cell[0]] == '@' && random.nextDouble() < options.weakDensity())
+                grid[cell[1]][cell[0]] = '!';
+
+        char nextTarget = (char) ('a' + bridgeIds.size());
+        for (int i = 0; i < options.switches(); ++i) {
+            char id = (char) ('A' + i);
+            int[] cell = plainFloor();
+            if (cell == null)
+                break;
+            grid[cell[1]][cell[0]] = id;
+
+            List<String> attributes = new ArrayList<>();
+            attributes.add(random.nextDouble() < options.hardFraction() ? "hard" : "soft");
+            if (!bridgeIds.isEmpty() && !options.effects().isEmpty()) {
+                int actions = 1 + random.nextInt(2);
+                for (int j = 0; j < actions; ++j) {
+                    BridgeEffect effect = options.effects().get(random.nextInt(options.effects().size()));
+                    attributes.add("%s %c".formatted(effect.toString().toLowerCase(),
+                            bridgeIds.get(random.nextInt(bridgeIds.size()))));
+                }
+            }
+            if (i < options.teleports()) {
+                int[] first = plainFloor(), second = plainFloor();
+                if (first != null && second != null && first != second) {
+                    grid[first[1]][first[0]] = nextTarget++;
+                    grid[second[1]][second[0]] = nextTarget++;
+                    attributes.add("teleport %c %c".formatted(nextTarget - 2, nextTarget - 1));
+                }
+            }
+            info.append("%c: %s\n".formatted(id, String.join(", ", attributes)));
+        }
+
+        StringBuilder level = new StringBuilder();
+        for (char[] row : grid)
+            level.append(new String(row).stripTrailing()).append('\n');
+        return new GeneratedLevel(level.toString(), info.toString());
+    }
+
+    private void fill(int x1, int y1, int x2, int y2, char c) {
+        for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); ++y)
+            for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); ++x)
+                grid[y][x] = c;
+    }
+
+    /**
+     * Carves an L-shaped corridor one or two tiles wide between two points
+     */
+    private void connect(int[] from, int[] to) {
+        int thickness = random.nextInt(2);
+        int cornerX = to[0], cornerY = from[1];
+        if (random.nextBoolean()) {
+            cornerX = from[0];
+            cornerY = to[1];
+        }
+        int maxX = grid[0].length - 1, maxY = grid.length - 1;
+        fill(from[0], from[1], Math.min(cornerX + thickness, maxX), Math.min(cornerY + thickness, maxY), '@');
+        fill(cornerX, cornerY, Math.min(to[0] + thickness, maxX), Math.min(to[1] + thickness, maxY), '@');
+    }
+
+    /**
+     * @return A random cell that is still plain strong floor, or null if there is none
+     */
+    private int[] plainFloor() {
+        for (int tries = 0; tries < 1000; ++tries) {
+            int[] cell = floor.get(random.nextInt(floor.size()));
+            if (grid[cell[1]][cell[0]] == '@')
+                return cell;
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = 1;
+        List<int[]> sizes = List.of(new int[]{20, 12});
+        double weak = 0.1, hard = 0.3;
+        int switches = 4, bridges = 4, teleports = 0, attempts = 50;
+        List<BridgeEffect> effects = List.of(BridgeEffect.values());
+        long seed = 1;
+        String directory = null;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                String arg = args[i];
+                if (arg.startsWith("--") && i + 1 == args.length) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                switch (arg) {
+                    case "--count" -> count = Integer.parseInt(args[++i]);
+                    case "--sizes" -> {
+                        List<int[]> parsed = new ArrayList<>();
+                        for (String size : args[++i].split(",")) {
+                            String[] parts = size.split("x");
+                            parsed.add(new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])});
+                        }
+                        sizes = parsed;
+                    }
+                    case "--weak" -> weak = Double.parseDouble(args[++i]);
+                    case "--switches" -> switches = Integer.parseInt(args[++i]);
+                    case "--bridges" -> bridges = Integer.parseInt(args[++i]);
+                    case "--hard" -> hard = Double.parseDouble(args[++i]);
+                    case "--effects" -> {
+                        List<BridgeEffect> parsed = new ArrayList<>();
+                        for (String effect : args[++i].split(","))
+                            parsed.add(BridgeEffect.valueOf(effect.strip().toUpperCase()));
+                        effects = parsed;
+                    }
+                    case "--teleports" -> teleports = Integer.parseInt(args[++i]);
+                    case "--seed" -> seed = Long.parseLong(args[++i]);
+                    case "--attempts" -> attempts = Integer.parseInt(args[++i]);
+                    default -> directory = arg;
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("error: bad option value: " + e.getMessage());
+            System.exit(1);
+        }
+        if (directory == null) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        Path output = Path.of(directory);
+        Files.createDirectories(output);
+        int number = 1;
+        for (int[] size : sizes) {
+            Options options;
+            try {
+                options = new Options(size[0], size[1], weak, switches, bridges, hard, effects, teleports);
+            } catch (IllegalArgumentException e) {
+                System.out.println("error: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            for (int i = 0; i < count; ++i, ++number) {
+                // Every level gets its own seed, so one level can be regenerated without the ones before it
+                long levelSeed = seed * 1_000_003L + number;
+                GeneratedLevel level = generate(options, levelSeed, attempts);
+                if (level == null) {
+                    System.out.printf("warning: no solvable %dx%d level in %d attempts with seed %d\n",
+                            size[0], size[1], attempts, levelSeed);
+                    continue;
+                }
+                Files.writeString(output.resolve("level%d.txt".formatted(number)), level.levelText());
+                Files.writeString(output.resolve("level%d.info".formatted(number)), level.infoText());
+                System.out.printf("level%d: %dx%d, seed %d\n", number, size[0], size[1], levelSeed);
+            }
+        }
+    }
+}
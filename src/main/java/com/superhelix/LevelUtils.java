@@ -1,25 +1,152 @@
 package com.superhelix;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class LevelUtils {
+    /// Files at least this big are memory-mapped instead of read into the heap
+    private static final long MAP_THRESHOLD = 1 << 20;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /// Opens the info text only once the tile matrix has parsed, so matrix errors are reported first
+    private interface InfoSource {
+        Lines open() throws FileNotFoundException;
+    }
+
+    /// Splits text into lines exactly like Scanner.nextLine, without building a string per line
+    private static class Lines {
+        private final char[] text;
+        private final int length;
+        private int position;
+        int start, end;
+
+        Lines(CharBuffer buffer) {
+            if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0) {
+                text = buffer.array();
+                length = buffer.limit();
+            } else {
+                text = new char[buffer.remaining()];
+                buffer.get(text);
+                length = text.length;
+            }
+        }
+
+        /**
+         * Moves to the next line, setting start and end to its bounds without the line separator
+         * @return Whether there was another line
+         */
+        boolean next() {
+            if (position == length)
+                return false;
+            start = position;
+            while (position < length && !isLineSeparator(text[position]))
+                ++position;
+            end = position;
+            if (position < length) {
+                if (text[position] == '\r' && position + 1 < length && text[position + 1] == '\n')
+                    ++position;
+                ++position;
+            }
+            return true;
+        }
+
+        char charAt(int index) { return text[index]; }
+
+        String line() { return new String(text, start, end - start); }
+
+        private static boolean isLineSeparator(char c) {
+            return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085';
+        }
+    }
+
     public static Level loadFromFile(String levelFilename, String infoFilename) throws FileNotFoundException, LevelParserException {
-        Scanner levelScanner = new Scanner(new File(levelFilename));
+        Lines levelLines = readLines(new File(levelFilename));
+        boolean hasInfo = infoFilename != null && infoFilename.length() > 0;
+        return load(levelLines, hasInfo ? () -> readLines(new File(infoFilename)) : null);
+    }
+
+    /**
+     * Parses a level from text instead of files
+     * @param levelText The tile matrix, as it would appear in a .txt file
+     * @param infoText The switch attributes, as they would appear in a .info file, or null if there are none
+     * @return The level
+     * @throws LevelParserException If the text isn't a valid level
+     */
+    public static Level loadFromText(String levelText, String infoText) throws LevelParserException {
+        try {
+            return load(new Lines(CharBuffer.wrap(levelText.toCharArray())),
+                    (infoText != null) ? () -> new Lines(CharBuffer.wrap(infoText.toCharArray())) : null);
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException(e); // Nothing is opened from disk
+        }
+    }
+
+    /**
+     * Reads a whole file in the default charset, like Scanner does
+     * @param file The file
+     * @return Its lines
+     * @throws FileNotFoundException If the file can't be opened, with the same message Scanner would give
+     */
+    private static Lines readLines(File file) throws FileNotFoundException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            ByteBuffer bytes;
+            if (size >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) != -1) { }
+                bytes.flip();
+            }
+            return new Lines(decode(bytes));
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Widens plain ASCII directly, and only runs the charset decoder when there's anything else.
+     * Text that isn't valid in the charset ends at the first bad byte, since Scanner also stops reading there (though
+     * Scanner may drop some of the text before it too).
+     */
+    private static CharBuffer decode(ByteBuffer bytes) {
+        int size = bytes.remaining();
+        char[] chars = new char[size];
+        for (int i = 0; i < size; ++i) {
+            byte b = bytes.get(bytes.position() + i);
+            if (b < 0) {
+                CharsetDecoder decoder = Charset.defaultCharset().newDecoder();
+                CharBuffer decoded = CharBuffer.allocate((int) (size * (double) decoder.maxCharsPerByte()) + 1);
+                if (!decoder.decode(bytes, decoded, true).isError())
+                    decoder.flush(decoded);
+                return decoded.flip();
+            }
+            chars[i] = (char) b;
+        }
+        return CharBuffer.wrap(chars);
+    }
 
+    private static Level load(Lines levelLines, InfoSource infoSource) throws FileNotFoundException, LevelParserException {
         Map<Character, TileMetadata> tilesMetadata = new TreeMap<>();
         List<List<Tile>> tiles = new ArrayList<>();
         int lineno;
 
         // Builds tile matrix and records their locations
         lineno = 1;
-        while (levelScanner.hasNextLine()) {
-            String line = levelScanner.nextLine();
+        while (levelLines.next()) {
             int y = lineno - 1;
             Tile tile;
-            List<Tile> tilesRow = new ArrayList<>();
-            for (int x = 0; x < line.length(); ++x) {
-                char c = line.charAt(x);
+            List<Tile> tilesRow = new ArrayList<>(levelLines.end - levelLines.start);
+            for (int x = 0; x < levelLines.end - levelLines.start; ++x) {
+                char c = levelLines.charAt(levelLines.start + x);
                 switch (c) {
                     case ' ' -> tile = Tile.VOID;
                     case '!' -> tile = Tile.WEAK_FLOOR;
@@ -54,11 +181,11 @@ public class LevelUtils {
             ++lineno;
         }
 
-        if (infoFilename != null && infoFilename.length() > 0) {
-            Scanner infoScanner = new Scanner(new File(infoFilename));
+        if (infoSource != null) {
+            Lines infoLines = infoSource.open();
             lineno = 1;
-            while (infoScanner.hasNextLine()) {
-                String line = infoScanner.nextLine().strip();
+            while (infoLines.next()) {
+                String line = infoLines.line().strip();
                 if (line.length() == 0)
                     continue;
                 String[] halves = line.split(":");
@@ -78,7 +205,7 @@ public class LevelUtils {
 
                 for (String arg : halves[1].split(",")) {
                     String singleAttr = arg.strip();
-                    String[] tokens = singleAttr.split("\\s+");
+                    String[] tokens = WHITESPACE.split(singleAttr);
                     if (tokens.length == 0)
                         continue;
                     switch (tokens[0]) {
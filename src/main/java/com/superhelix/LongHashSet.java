@@ -0,0 +1,104 @@
+package com.superhelix;
+
+import java.util.Arrays;
+
+/// An open-addressing hash set of primitive longs, used to record visited state keys without boxing.
+/// Slots are probed linearly and the table doubles once it is more than half full.
+public class LongHashSet {
+    private static final long EMPTY = 0L;
+
+    private long[] slots;
+    private int size;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        slots = new long[capacity];
+    }
+
+    /**
+     * Spreads the bits of a key so that keys differing only in their high bits don't collide (murmur3 finalizer)
+     * @param key The key to hash
+     * @return The mixed hash
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Adds a key to the set
+     * @param key The key to add
+     * @return Whether the key was not already present
+     */
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            if (containsEmpty)
+                return false;
+            containsEmpty = true;
+            ++size;
+            return true;
+        }
+
+        int mask = slots.length - 1;
+        int i = (int) mix(key) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == key)
+                return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = key;
+        if (++size * 2 > slots.length)
+            grow();
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == EMPTY)
+            return containsEmpty;
+
+        int mask = slots.length - 1;
+        int i = (int) mix(key) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == key)
+                return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    private void grow() {
+        long[] oldSlots = slots;
+        slots = new long[oldSlots.length * 2];
+        int mask = slots.length - 1;
+        for (long key : oldSlots) {
+            if (key == EMPTY)
+                continue;
+            int i = (int) mix(key) & mask;
+            while (slots[i] != EMPTY)
+                i = (i + 1) & mask;
+            slots[i] = key;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+        containsEmpty = false;
+    }
+
+    public int size() { return size; }
+
+    /**
+     * @return The number of bytes held by the backing table
+     */
+    public long footprintBytes() { return (long) slots.length * Long.BYTES; }
+}
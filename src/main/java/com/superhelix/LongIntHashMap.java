@@ -0,0 +1,97 @@
+package com.superhelix;
+
+import java.util.Arrays;
+
+/// An open-addressing hash map from primitive longs to ints, laid out like LongHashSet.
+public class LongIntHashMap {
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private boolean containsEmpty;
+    private int emptyValue;
+    private final int missingValue;
+
+    /**
+     * @param expectedSize How many entries to make room for up front
+     * @param missingValue What get returns for keys that aren't in the map
+     */
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        this.missingValue = missingValue;
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int i = (int) LongHashSet.mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    public int get(long key) {
+        if (key == EMPTY)
+            return containsEmpty ? emptyValue : missingValue;
+        int i = slotOf(key);
+        return (keys[i] == key) ? values[i] : missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY)
+            return containsEmpty;
+        return keys[slotOf(key)] == key;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value
+     * @param key The key
+     * @param value The value
+     */
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            if (!containsEmpty)
+                ++size;
+            containsEmpty = true;
+            emptyValue = value;
+            return;
+        }
+
+        int i = slotOf(key);
+        values[i] = value;
+        if (keys[i] == key)
+            return;
+        keys[i] = key;
+        if (++size * 2 > keys.length)
+            grow();
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int j = 0; j < oldKeys.length; ++j) {
+            if (oldKeys[j] == EMPTY)
+                continue;
+            int i = slotOf(oldKeys[j]);
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        containsEmpty = false;
+    }
+
+    public int size() { return size; }
+
+    /**
+     * @return The number of bytes held by the backing tables
+     */
+    public long footprintBytes() { return (long) keys.length * (Long.BYTES + Integer.BYTES); }
+}
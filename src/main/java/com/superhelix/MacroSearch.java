@@ -0,0 +1,376 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// Shortest-path search over decision points instead of single moves.
+/// A decision point is the start, a state the player just reached by landing on a switch, or a state where the block
+/// is in two halves. Between two whole decision points the block only rolls, so the bridges can't change, and every
+/// way out of one can be found with a breadth-first search over its bridge configuration alone. Each such roll
+/// sequence becomes one macro-edge, weighted by its move count, to the next decision point or to the goal, and
+/// Dijkstra's algorithm then runs over those edges. Split halves move independently, so searching every roll out of
+/// them would cover the product of both halves' reach; their single moves are the edges instead.
+///
+/// The rolls a bridge configuration allows are resolved once into a roll graph that every decision point with those
+/// bridges searches, and the rolls along the chosen edges are searched for again afterwards to print the solution
+/// move by move. Weak floor needs no decision points of its own, since it only forbids standing on it and never
+/// changes the state.
+public class MacroSearch {
+    private record Entry(int node, int cost, long order) { }
+
+    private static final Comparator<Entry> PRIORITY = Comparator.comparingInt(Entry::cost)
+            .thenComparingLong(Entry::order);
+    /// A decision point's key, cost, parent and closed flag, plus an open entry with its header and queue slot
+    private static final int NODE_BYTES = Long.BYTES + 2 * Integer.BYTES + 1 + 40;
+    /// A roll graph state's key, first edge, edge count and stamp
+    private static final int GRAPH_NODE_BYTES = Long.BYTES + 2 * Integer.BYTES + 1;
+    /// A roll graph edge's target key, target state and move
+    private static final int EDGE_BYTES = Long.BYTES + Integer.BYTES + 1;
+    /// A roll graph queue slot's state, parent, move and depth
+    private static final int QUEUE_BYTES = 3 * Integer.BYTES + 1;
+
+    private final CompiledLevel compiled;
+    private final MoveGenerator generator;
+    private final long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+    private final byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+    private final long[] childSwitches = new long[MoveGenerator.MAX_CHILDREN];
+    /// The roll graph of every bridge mask a whole decision point has been expanded with
+    private final Map<Long, RollGraph> rollGraphs = new HashMap<>();
+    /// The macro-edges already listed for the decision point being expanded, by target
+    private final LongIntHashMap endpoints = new LongIntHashMap(16, -1);
+
+    /// Checked while listing macro-edges too, since one decision point can roll over most of a large level
+    private final BudgetTracker tracker;
+    /// The decision points' estimated memory use
+    private long searchBytes;
+    /// The roll graphs' estimated memory use
+    private long graphBytes;
+    /// The limit that stopped the search, or null
+    private SolveResult.Status limit;
+
+    private MacroSearch(CompiledLevel compiled, MoveGenerator generator, BudgetTracker tracker) {
+        this.compiled = compiled;
+        this.generator = generator;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level) {
+        return generateMinimalMovePattern(level, new SearchStats());
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * Nodes expanded and generated count decision points and macro-edges, and visited states counts decision points.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, SearchStats stats) {
+        return solve(level, stats, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Searches for a minimal player move pattern within a budget, where the expansion limit counts decision points
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public static SolveResult solve(Level level, SearchStats stats, SolveBudget budget) {
+        long startTime = System.nanoTime();
+        CompiledLevel compiled = new CompiledLevel(level);
+        DeadStateAnalysis deadStates = new DeadStateAnalysis(compiled);
+        stats.setLevelAnalysis(compiled, deadStates);
+        MoveGenerator generator = new MoveGenerator(compiled, deadStates);
+        return new MacroSearch(compiled, generator, new BudgetTracker(budget, startTime)).search(stats, startTime);
+    }
+
+    private SolveResult search(SearchStats stats, long startTime) {
+        // Decision points are numbered in the order they're found
+        LongIntHashMap indices = new LongIntHashMap(1024, -1);
+        long[] keys = new long[1024];
+        int[] costs = new int[1024];
+        int[] parents = new int[1024];
+        boolean[] closed = new boolean[1024];
+        int nodeCount = 0;
+
+        PriorityQueue<Entry> open = new PriorityQueue<>(PRIORITY);
+        long order = 0;
+        long startKey = compiled.getStartKey();
+        keys[0] = startKey;
+        parents[0] = -1;
+        indices.put(startKey, nodeCount++);
+        open.add(new Entry(0, 0, order++));
+
+        int goal = -1;
+        long expanded = 0;
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+        List<long[]> edges = new ArrayList<>();
+        while (!open.isEmpty()) {
+            searchBytes = indices.footprintBytes() + (long) keys.length * NODE_BYTES;
+            limit = tracker.check(expanded + 1, searchBytes + graphBytes, open.peek().cost(), open.size());
+            if (limit != null) {
+                status = limit;
+                break;
+            }
+            Entry entry = open.remove();
+            int node = entry.node();
+            if (closed[node] || entry.cost() > costs[node]) {
+                stats.addDuplicates(1);
+                continue;
+            }
+            closed[node] = true;
+            if (compiled.isGoal(keys[node])) {
+                goal = node;
+                break;
+            }
+
+            edges.clear();
+            if (!findMacroEdges(keys[node], edges)) {
+                status = limit;
+                break;
+            }
+            ++expanded;
+            stats.addExpanded();
+            stats.addGenerated(edges.size());
+            for (long[] edge : edges) {
+                long target = edge[0];
+                int cost = entry.cost() + (int) edge[1];
+                int index = indices.get(target);
+                if (index == -1) {
+                    if (nodeCount == keys.length) {
+                        keys = Arrays.copyOf(keys, nodeCount * 2);
+                        costs = Arrays.copyOf(costs, nodeCount * 2);
+                        parents = Arrays.copyOf(parents, nodeCount * 2);
+                        closed = Arrays.copyOf(closed, nodeCount * 2);
+                    }
+                    index = nodeCount++;
+                    keys[index] = target;
+                    indices.put(target, index);
+                } else if (closed[index] || costs[index] <= cost) {
+                    stats.addDuplicates(1);
+                    continue;
+                }
+                costs[index] = cost;
+                parents[index] = node;
+                open.add(new Entry(index, cost, order++));
+            }
+            stats.updatePeakQueueSize(open.size());
+        }
+        stats.setVisitedSize(nodeCount);
+        stats.setPrunedStates(generator.getPrunedCount());
+        stats.setSearchNanos(System.nanoTime() - startTime);
+        if (goal == -1)
+            return new SolveResult(status, new ArrayList<>());
+
+        long reconstructionStart = System.nanoTime();
+        List<Integer> path = new ArrayList<>();
+        for (int node = goal; node != -1; node = parents[node])
+            path.add(node);
+        Collections.reverse(path);
+        List<String> movePattern = new ArrayList<>();
+        for (int i = 1; i < path.size(); ++i) {
+            for (byte move : rollsBetween(keys[path.get(i - 1)], keys[path.get(i)]))
+                movePattern.add(Move.fromOrdinal(move).description());
+        }
+        stats.setReconstructionNanos(System.nanoTime() - reconstructionStart);
+        return new SolveResult(SolveResult.Status.SOLVED, movePattern);
+    }
+
+    /**
+     * Lists the macro-edges out of a decision point
+     * @param source The decision point
+     * @param edges Receives every macro-edge as its target key and move count
+     * @return Whether every macro-edge was found before the budget ran out
+     */
+    private boolean findMacroEdges(long source, List<long[]> edges) {
+        if (!isWhole(source)) {
+            // Each half moves on its own, so every single move is an edge rather than searching their product
+            int count = generator.expand(source, childKeys, childMoves);
+            for (int c = 0; c < count; ++c)
+                edges.add(new long[]{childKeys[c], 1});
+            return true;
+        }
+        explore(source, source, edges);
+        return limit == null;
+    }
+
+    /**
+     * Finds the moves of the shortest macro-edge between two decision points
+     */
+    private byte[] rollsBetween(long source, long target) {
+        if (!isWhole(source)) {
+            int count = generator.expand(source, childKeys, childMoves);
+            for (int c = 0; c < count; ++c) {
+                if (childKeys[c] == target)
+                    return new byte[]{childMoves[c]};
+            }
+            throw new IllegalStateException("The macro-edge being followed doesn't exist");
+        }
+        return explore(source, target, null);
+    }
+
+    private boolean isWhole(long key) {
+        StateEncoder encoder = compiled.getEncoder();
+        return generator.isWhole(encoder.firstCell(key), encoder.secondCell(key));
+    }
+
+    /**
+     * Breadth-first search over the rolls from a whole decision point, through the roll graph of its bridges, where
+     * moves that land on a switch, at the goal or in two halves end a macro-edge instead of being followed
+     * @param source The decision point
+     * @param target The decision point whose path should be returned, or the source to list every macro-edge
+     * @param edges Receives the macro-edges, or null when looking for the target
+     * @return The moves to the target, or null if it was only listing or the budget ran out while listing
+     */
+    private byte[] explore(long source, long target, List<long[]> edges) {
+        RollGraph graph = rollGraphs.get(compiled.getEncoder().bridges(source));
+        if (graph == null) {
+            graph = new RollGraph();
+            rollGraphs.put(compiled.getEncoder().bridges(source), graph);
+        }
+        int stamp = graph.nextStamp();
+        int head = 0, tail = 0;
+        int start = graph.node(source);
+        graph.enqueue(tail++, start, -1, (byte) 0, 0, stamp);
+        endpoints.clear();
+
+        while (head < tail) {
+            if (edges != null) {
+                limit = tracker.checkStep(searchBytes + graphBytes);
+                if (limit != null)
+                    return null;
+            }
+            int index = head++;
+            int node = graph.queue[index];
+            int depth = graph.depths[index];
+            if (graph.firstEdges[node] == -1)
+                graph.resolve(node);
+            int end = graph.firstEdges[node] + graph.edgeCounts[node];
+            for (int e = graph.firstEdges[node]; e < end; ++e) {
+                int child = graph.edgeNodes[e];
+                if (child == RollGraph.ENDPOINT) {
+                    long childKey = graph.edgeKeys[e];
+                    if (edges == null && childKey == target) {
+                        // The first time the target is reached is along a shortest path
+                        byte[] path = new byte[depth + 1];
+                        path[depth] = graph.edgeMoves[e];
+                        for (int i = index; graph.parents[i] != -1; i = graph.parents[i])
+                            path[graph.depths[i] - 1] = graph.moves[i];
+                        return path;
+                    }
+                    if (edges != null && !endpoints.containsKey(childKey)) {
+                        endpoints.put(childKey, edges.size());
+                        edges.add(new long[]{childKey, depth + 1});
+                    }
+                    continue;
+                }
+                if (graph.stamps[child] == stamp)
+                    continue;
+                graph.enqueue(tail++, child, index, graph.edgeMoves[e], depth + 1, stamp);
+            }
+        }
+        if (edges == null)
+            throw new IllegalStateException("The macro-edge being followed doesn't exist");
+        return null;
+    }
+
+    /// The whole-block states one bridge configuration lets the player roll between, shared by every decision point
+    /// with those bridges. A state's moves are resolved the first time a search reaches it, into edges that lead
+    /// either to another state of the graph or to an endpoint, which is the key of the next decision point.
+    private final class RollGraph {
+        static final int ENDPOINT = -1;
+
+        private final LongIntHashMap indices = new LongIntHashMap(1024, -1);
+        private long[] keys = new long[1024];
+        /// Where each state's edges start, or -1 if its moves haven't been resolved yet
+        private int[] firstEdges = new int[1024];
+        private byte[] edgeCounts = new byte[1024];
+        /// The search that last queued each state, so no search has to clear what the previous one marked
+        private int[] stamps = new int[1024];
+        private int nodeCount;
+        private int lastStamp;
+
+        private long[] edgeKeys = new long[4096];
+        private int[] edgeNodes = new int[4096];
+        private byte[] edgeMoves = new byte[4096];
+        private int edgeCount;
+
+        /// The breadth-first queue, by position: the state, the position it was reached from, and the move and depth
+        private int[] queue = new int[1024];
+        private int[] parents = new int[1024];
+        private byte[] moves = new byte[1024];
+        private int[] depths = new int[1024];
+
+        int nextStamp() { return ++lastStamp; }
+
+        /**
+         * @param key A whole-block state with this graph's bridges
+         * @return Its index, which is added if it's new
+         */
+        int node(long key) {
+            int index = indices.get(key);
+            if (index != -1)
+                return index;
+            if (nodeCount == keys.length) {
+                keys = Arrays.copyOf(keys, nodeCount * 2);
+                firstEdges = Arrays.copyOf(firstEdges, nodeCount * 2);
+                edgeCounts = Arrays.copyOf(edgeCounts, nodeCount * 2);
+                stamps = Arrays.copyOf(stamps, nodeCount * 2);
+                graphBytes += (long) nodeCount * GRAPH_NODE_BYTES;
+            }
+            index = nodeCount++;
+            keys[index] = key;
+            firstEdges[index] = -1;
+            long tableBytes = indices.footprintBytes();
+            indices.put(key, index);
+            graphBytes += indices.footprintBytes() - tableBytes;
+            return index;
+        }
+
+        /**
+         * Resolves a state's moves into edges
+         * @param node The state
+         */
+        void resolve(int node) {
+            int count = generator.expand(keys[node], childKeys, childMoves, childSwitches);
+            if (edgeCount + count > edgeKeys.length) {
+                graphBytes += (long) edgeKeys.length * EDGE_BYTES;
+                edgeKeys = Arrays.copyOf(edgeKeys, edgeKeys.length * 2);
+                edgeNodes = Arrays.copyOf(edgeNodes, edgeKeys.length);
+                edgeMoves = Arrays.copyOf(edgeMoves, edgeKeys.length);
+            }
+            firstEdges[node] = edgeCount;
+            edgeCounts[node] = (byte) count;
+            for (int c = 0; c < count; ++c) {
+                long child = childKeys[c];
+                boolean endpoint = childSwitches[c] != 0 || compiled.isGoal(child) || !isWhole(child);
+                edgeKeys[edgeCount] = child;
+                edgeNodes[edgeCount] = endpoint ? ENDPOINT : node(child);
+                edgeMoves[edgeCount++] = childMoves[c];
+            }
+        }
+
+        /**
+         * Puts a state at a position of the queue
+         */
+        void enqueue(int position, int node, int parent, byte move, int depth, int stamp) {
+            if (position == queue.length) {
+                graphBytes += (long) position * QUEUE_BYTES;
+                queue = Arrays.copyOf(queue, position * 2);
+                parents = Arrays.copyOf(parents, position * 2);
+                moves = Arrays.copyOf(moves, position * 2);
+                depths = Arrays.copyOf(depths, position * 2);
+            }
+            queue[position] = node;
+            parents[position] = parent;
+            moves[position] = move;
+            depths[position] = depth;
+            stamps[node] = stamp;
+        }
+    }
+}
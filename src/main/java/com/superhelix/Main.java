@@ -1,20 +1,288 @@
 package com.superhelix;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
+    private static final String USAGE = """
+            usage: prog [--engine bfs|astar|dense|external|macro|idastar|bitboard] [--threads n] [--memory mb] [--stats] [--json] [--cache file] [--hints file]
+                        [--max-states n] [--time-limit seconds] [--progress] <level_path> [level_info_path]
+                   prog [--engine bfs|astar|dense|external|macro|idastar|bitboard] [--jobs n] [--cache file] --batch <level_directory|bundle>
+                   prog --pack <output_file> <level_path> [level_info_path]
+                   prog --pack <output_file> --batch <level_directory>
+                   prog [--engine bfs|astar|dense|external|macro|idastar|bitboard] [--jobs n] [--timeout seconds] --serve <port>
+                   prog [--jobs n] --verify <solutions_file>""";
+
     public static void main(String[] args) {
-        if (args.length == 0) {
-            System.out.println("usage: prog <level_path> [level_info_path]");
+        SearchEngine engine = SearchEngine.BFS;
+        int threads = 1;
+        long memoryBudget = ExternalStateGraph.DEFAULT_MEMORY_BUDGET;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        String batchDirectory = null;
+        String packFilename = null;
+        int servePort = -1;
+        int timeoutSeconds = SolverServer.DEFAULT_TIMEOUT_SECONDS;
+        boolean printStats = false;
+        boolean printJson = false;
+        String cacheFilename = null;
+        String hintsFilename = null;
+        String verifyFilename = null;
+        SolveBudget budget = SolveBudget.UNLIMITED;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--engine" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    try {
+                        engine = SearchEngine.valueOf(args[++i].toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("error: unknown engine '%s'".formatted(args[i]));
+                        System.exit(1);
+                    }
+                }
+                case "--threads" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    try {
+                        threads = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        threads = 0;
+                    }
+                    if (threads < 1) {
+                        System.out.println("error: thread count must be a positive integer");
+                        System.exit(1);
+                    }
+                }
+                case "--memory" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    try {
+                        memoryBudget = Long.parseLong(args[++i]) << 20;
+                    } catch (NumberFormatException e) {
+                        memoryBudget = 0;
+                    }
+                    if (memoryBudget < ExternalStateGraph.MIN_MEMORY_BUDGET) {
+                        System.out.println("error: the memory budget must be a positive number of megabytes");
+                        System.exit(1);
+                    }
+                }
+                case "--jobs" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    try {
+                        jobs = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        jobs = 0;
+                    }
+                    if (jobs < 1) {
+                        System.out.println("error: job count must be a positive integer");
+                        System.exit(1);
+                    }
+                }
+                case "--batch" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    batchDirectory = args[++i];
+                }
+                case "--serve" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    try {
+                        servePort = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        servePort = -1;
+                    }
+                    if (servePort < 0 || servePort > 0xffff) {
+                        System.out.println("error: port must be between 0 and 65535");
+                        System.exit(1);
+                    }
+                }
+                case "--timeout" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    try {
+                        timeoutSeconds = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        timeoutSeconds = 0;
+                    }
+                    if (timeoutSeconds < 1) {
+                        System.out.println("error: timeout must be a positive number of seconds");
+                        System.exit(1);
+                    }
+                }
+                case "--max-states" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    long maxStates;
+                    try {
+                        maxStates = Long.parseLong(args[++i]);
+                    } catch (NumberFormatException e) {
+                        maxStates = 0;
+                    }
+                    if (maxStates < 1) {
+                        System.out.println("error: the state limit must be a positive number");
+                        System.exit(1);
+                    }
+                    budget = budget.withMaxExpanded(maxStates);
+                }
+                case "--time-limit" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    double seconds;
+                    try {
+                        seconds = Double.parseDouble(args[++i]);
+                    } catch (NumberFormatException e) {
+                        seconds = 0;
+                    }
+                    if (!(seconds > 0)) {
+                        System.out.println("error: the time limit must be a positive number of seconds");
+                        System.exit(1);
+                    }
+                    budget = budget.withTimeLimit((long) (seconds * 1e9), TimeUnit.NANOSECONDS);
+                }
+                case "--progress" -> budget = budget.withProgress((depth, frontierSize, expanded) ->
+                        System.err.printf("depth %d, %d states queued, %d expanded\n", depth, frontierSize, expanded),
+                        1, TimeUnit.SECONDS);
+                case "--pack" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    packFilename = args[++i];
+                }
+                case "--cache" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    cacheFilename = args[++i];
+                }
+                case "--hints" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    hintsFilename = args[++i];
+                }
+                case "--verify" -> {
+                    if (i + 1 == args.length) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    verifyFilename = args[++i];
+                }
+                case "--stats" -> printStats = true;
+                case "--json" -> printJson = printStats = true;
+                default -> positional.add(args[i]);
+            }
+        }
+
+        if (servePort != -1) {
+            try {
+                SolverServer server = new SolverServer(servePort, engine, jobs, timeoutSeconds);
+                server.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+                System.out.printf("Listening on http://localhost:%d with %d solvers\n", server.getPort(), jobs);
+            } catch (IOException e) {
+                System.out.println("error: can't start the server: " + e.getMessage());
+                System.exit(1);
+            }
             return;
         }
-        String levelFilename = args[0];
-        String infoFilename = (args.length == 2) ? args[1] : null;
 
+        if (verifyFilename != null) {
+            try {
+                if (SolutionVerifier.verifyFile(Path.of(verifyFilename), jobs, System.out) > 0)
+                    System.exit(1);
+            } catch (IOException e) {
+                System.out.println("error: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (cacheFilename != null && hintsFilename != null) {
+            // Either one answers without searching, so only one of them could be used
+            System.out.println("error: --cache and --hints can't be used together");
+            System.exit(1);
+        }
+
+        SolutionCache cache = null;
+        if (cacheFilename != null) {
+            try {
+                cache = SolutionCache.open(Path.of(cacheFilename), SolutionCache.DEFAULT_MAX_ENTRIES);
+            } catch (IOException e) {
+                System.out.println("error: can't read the cache: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (batchDirectory != null && packFilename != null) {
+            try {
+                int count = BatchSolver.packDirectory(new File(batchDirectory), Path.of(packFilename));
+                System.out.printf("Packed %d levels into '%s'\n", count, packFilename);
+            } catch (IOException | LevelParserException e) {
+                System.out.println("error: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (batchDirectory != null) {
+            try {
+                if (new File(batchDirectory).isFile())
+                    BatchSolver.solveBundle(LevelBundle.open(Path.of(batchDirectory)), engine, jobs, cache,
+                            System.out, System.err);
+                else
+                    BatchSolver.solveDirectory(new File(batchDirectory), engine, jobs, cache, System.out, System.err);
+                if (cache != null)
+                    cache.save();
+            } catch (IOException e) {
+                System.out.println("error: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (positional.size() == 0) {
+            System.out.println(USAGE);
+            return;
+        }
+        String levelFilename = positional.get(0);
+        String infoFilename = (positional.size() == 2) ? positional.get(1) : null;
+
+        SearchStats stats = new SearchStats();
         Level level;
         try {
-            level = LevelUtils.loadFromFile(levelFilename, infoFilename);
+            long parseStart = System.nanoTime();
+            if (LevelFormat.isCompiled(Path.of(levelFilename)))
+                level = LevelFormat.read(Path.of(levelFilename));
+            else
+                level = LevelUtils.loadFromFile(levelFilename, infoFilename);
+            stats.setParseNanos(System.nanoTime() - parseStart);
         } catch (IOException | LevelParserException e) {
             System.out.println("error: " + e.getMessage());
             level = null; // quiet error
@@ -22,23 +290,114 @@ public class Main {
             System.exit(1);
         }
 
-        ArrayList<String> moves = (ArrayList<String>) StateGraph.generateMinimalMovePattern(level);
-        if (moves.size() > 0) {
-            System.out.printf("Here's the solution to '%s' in %d moves:\n", args[0], moves.size());
-            for (int i = 0; i < moves.size();) {
-                int j = i + 1;
-                if (!moves.get(i).startsWith("SPACE"))
-                    while (j < moves.size() && moves.get(i).equals(moves.get(j)))
-                        ++j;
-                int count = j - i;
-                if (count != 1)
-                    System.out.printf("%3d. %s x %d\n", i + 1, moves.get(i), j - i);
-                else
-                    System.out.printf("%3d. %s\n", i + 1, moves.get(i));
-                i = j;
+        if (packFilename != null) {
+            try {
+                LevelFormat.write(level, Path.of(packFilename));
+                System.out.printf("Compiled '%s' into '%s'\n", levelFilename, packFilename);
+            } catch (IOException e) {
+                System.out.println("error: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        // Where the moves came from when no search ran, since then there are no counters to print
+        String source = null;
+        List<String> moves = null;
+        if (cache != null && (moves = cache.get(level, engine)) != null)
+            source = "the solution cache";
+        if (hintsFilename != null) {
+            moves = solveWithHints(level, Path.of(hintsFilename));
+            source = "the hint table";
+        }
+        if (moves == null) {
+            SolveResult result = engine.solve(level, stats, threads, memoryBudget, budget);
+            if (result.isExhausted()) {
+                System.out.printf("Gave up on '%s' after expanding %d states: %s\n", levelFilename,
+                        stats.getNodesExpanded(), describe(result.status()));
+                System.exit(2);
             }
+            moves = result.moves();
+            if (cache != null) {
+                cache.put(level, engine, moves);
+                try {
+                    cache.save();
+                } catch (IOException e) {
+                    System.out.println("warning: can't write the cache: " + e.getMessage());
+                }
+            }
+        }
+        if (moves.size() > 0) {
+            System.out.printf("Here's the solution to '%s' in %d moves:\n", levelFilename, moves.size());
+            System.out.print(formatMovePattern(moves));
         } else {
             System.out.println("Sorry, I can't find a solution to that. Have you rechecked the tile matrix and info file?");
         }
+
+        if (printStats && source != null)
+            System.out.printf("\nNo search ran, so there are no stats: the moves came from %s\n", source);
+        else if (printJson)
+            System.out.println(stats.toJson());
+        else if (printStats)
+            System.out.print("\n" + stats);
+    }
+
+    /**
+     * Loads the hint table of a level, analyzing the level and saving the table first if it's missing or out of date,
+     * and follows its hints from the start
+     * @param level The level
+     * @param file The hint table file
+     * @return The moves
+     */
+    private static List<String> solveWithHints(Level level, Path file) {
+        HintTable table = null;
+        try {
+            table = HintTable.load(file, level);
+        } catch (IOException e) {
+            System.out.println("warning: can't read the hint table: " + e.getMessage());
+        }
+        if (table == null) {
+            table = HintTable.build(level);
+            try {
+                table.save(file);
+            } catch (IOException e) {
+                System.out.println("warning: can't write the hint table: " + e.getMessage());
+            }
+        }
+        System.out.printf("Hint table: %d states, %d can reach the goal, the farthest is %d moves away\n",
+                table.size(), table.solvableCount(), table.maxDistance());
+        return table.solution();
+    }
+
+    private static String describe(SolveResult.Status status) {
+        return switch (status) {
+            case TIME_LIMIT -> "out of time";
+            case NODE_LIMIT -> "the state limit was reached";
+            case MEMORY_LIMIT -> "out of memory";
+            case CANCELLED -> "cancelled";
+            default -> status.toString();
+        };
+    }
+
+    /**
+     * Formats moves as a numbered list, collapsing repeated moves into one line
+     * @param moves The moves
+     * @return One line per run of moves
+     */
+    public static String formatMovePattern(List<String> moves) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < moves.size();) {
+            int j = i + 1;
+            if (!moves.get(i).startsWith("SPACE"))
+                while (j < moves.size() && moves.get(i).equals(moves.get(j)))
+                    ++j;
+            int count = j - i;
+            if (count != 1)
+                builder.append("%3d. %s x %d\n".formatted(i + 1, moves.get(i), j - i));
+            else
+                builder.append("%3d. %s\n".formatted(i + 1, moves.get(i)));
+            i = j;
+        }
+        return builder.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.superhelix;
+
+/// Every key press the solver can output, in the order MoveGenerator tries them.
+/// The SPACE variants switch control to the other half of a split player before moving.
+public enum Move {
+    UP,
+    SPACE_UP,
+    DOWN,
+    SPACE_DOWN,
+    LEFT,
+    SPACE_LEFT,
+    RIGHT,
+    SPACE_RIGHT;
+
+    private static final Move[] MOVES = values();
+    private static final String[] DESCRIPTIONS = new String[MOVES.length];
+
+    static {
+        for (Move move : MOVES)
+            DESCRIPTIONS[move.ordinal()] = move.switchesFocus()
+                    ? "SPACE " + move.direction() : move.direction().toString();
+    }
+
+    public Direction direction() {
+        return Direction.values()[ordinal() / 2];
+    }
+
+    public boolean switchesFocus() {
+        return ordinal() % 2 == 1;
+    }
+
+    /**
+     * @return The text printed for this move, such as "LEFT" or "SPACE LEFT"
+     */
+    public String description() {
+        return DESCRIPTIONS[ordinal()];
+    }
+
+    public static Move of(Direction direction, boolean switchFocus) {
+        return MOVES[direction.ordinal() * 2 + (switchFocus ? 1 : 0)];
+    }
+
+    public static Move fromOrdinal(int ordinal) {
+        return MOVES[ordinal];
+    }
+
+    /**
+     * Parses a move from its description
+     * @param description The text printed for the move
+     * @return The move
+     * @throws IllegalArgumentException If the text isn't a move
+     */
+    public static Move fromDescription(String description) {
+        return valueOf(description.strip().replace(' ', '_'));
+    }
+}
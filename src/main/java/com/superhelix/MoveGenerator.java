@@ -0,0 +1,348 @@
+package com.superhelix;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/// Applies the rules of the game to packed state keys: which moves are legal from a state, where they lead, and what
+/// the switches under the player do. Every search engine expands states through this class.
+/// It keeps no state of its own between calls, so one generator can be shared by several threads.
+///
+/// Where a whole block rolls to is looked up in a table built once per level, indexed by the block's first cell, its
+/// orientation and the direction. Each entry holds the first cell and orientation it lands in, and whether that can
+/// depend on the bridges, or FALLS if the block can't stay on the level whatever the bridges are. Expanding a state
+/// is then table lookups, a few cell offsets for split halves and bridge mask checks, with nothing allocated.
+public class MoveGenerator {
+    /// Four directions, each with and without swapping focus
+    public static final int MAX_CHILDREN = 8;
+
+    static final int VERTICAL = 0, ALONG_X = 1, ALONG_Y = 2;
+    static final int DIRECTIONS = 4;
+    private static final int FALLS = -1;
+
+    /// The orientation a whole block has after rolling, by orientation and then direction
+    private static final int[][] ROLLED_ORIENTATION = {
+            {ALONG_Y, ALONG_Y, ALONG_X, ALONG_X},
+            {ALONG_X, ALONG_X, VERTICAL, VERTICAL},
+            {VERTICAL, VERTICAL, ALONG_Y, ALONG_Y},
+    };
+
+    private final CompiledLevel level;
+    private final StateEncoder encoder;
+    private final DeadStateAnalysis deadStates;
+    private final LongAdder pruned = new LongAdder();
+
+    /// The cell offset of a step in each direction
+    private final int[] steps;
+    /// The second cell's offset from the first for each orientation
+    private final int[] spans;
+    /// The first cell's offset after rolling, by orientation and then direction
+    private final int[][] rollOffsets;
+    /// Indexed by (first cell * 3 + orientation) * 4 + direction
+    private final int[] rolls;
+
+    public MoveGenerator(CompiledLevel level) {
+        this(level, null);
+    }
+
+    /**
+     * @param level The level
+     * @param deadStates The analysis of the level whose dead states are left out of every expansion, or null to keep
+     *                   all of them
+     */
+    public MoveGenerator(CompiledLevel level, DeadStateAnalysis deadStates) {
+        this.level = level;
+        this.deadStates = deadStates;
+        encoder = level.getEncoder();
+
+        int column = level.getHeight();
+        steps = new int[]{-1, 1, -column, column};
+        spans = new int[]{0, column, 1};
+        rollOffsets = new int[][]{
+                {-2, 1, -2 * column, column},
+                {-1, 1, -column, 2 * column},
+                {-1, 2, -column, column},
+        };
+        rolls = buildRolls();
+    }
+
+    /**
+     * Works out where a whole block rolls to from every cell, orientation and direction
+     * @return The table of rolls
+     */
+    private int[] buildRolls() {
+        int column = level.getHeight();
+        int cellCount = level.getCellCount();
+        int[] table = new int[cellCount * 3 * DIRECTIONS];
+        for (int cell = 0; cell < cellCount; ++cell) {
+            for (int orientation = VERTICAL; orientation <= ALONG_Y; ++orientation) {
+                for (int direction = 0; direction < DIRECTIONS; ++direction) {
+                    int index = (cell * 3 + orientation) * DIRECTIONS + direction;
+                    int rolled = ROLLED_ORIENTATION[orientation][direction];
+                    int first = cell + rollOffsets[orientation][direction];
+                    int second = first + spans[rolled];
+                    // The fall check looks one cell past the block, which has to stay inside the arrays
+                    if (first - column < 0 || second + column >= cellCount
+                            || !isSupported(first, second, false, -1L)) {
+                        table[index] = FALLS;
+                        continue;
+                    }
+                    // Bridges only ever add floor, so a block that stands with every bridge off always stands
+                    boolean needsBridges = !isSupported(first, second, false, 0L);
+                    table[index] = first << 3 | rolled << 1 | (needsBridges ? 1 : 0);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param first The first cell
+     * @param second The second cell, which must not come before the first
+     * @return Whether the two cells are too far apart to be one block
+     */
+    private boolean isSplit(int first, int second) {
+        int span = second - first;
+        int column = level.getHeight();
+        return !(span == 0 || span == column || span == 1 && first % column != column - 1);
+    }
+
+    /**
+     * Decides whether the player stays on the level after landing on two cells
+     * @param first The first cell, which must not come after the second
+     * @param second The second cell
+     * @param split Whether the two halves move separately
+     * @param bridges The bridge mask
+     * @return Whether the player is supported
+     */
+    public boolean isSupported(int first, int second, boolean split, long bridges) {
+        Tile firstTile = level.tileAt(first, bridges);
+        Tile secondTile = level.tileAt(second, bridges);
+
+        if (split)
+            return firstTile != Tile.VOID && secondTile != Tile.VOID;
+        if (first == second) {
+            // It should be noted that vertical slabs are the only victim of the weak floor tile
+            return firstTile != Tile.VOID && secondTile != Tile.WEAK_FLOOR;
+        }
+
+        // A-B-C-D is meant to represent the 4 relevant tiles that are coincident with the horizontal player
+        // which are uniquely responsible for determining if the player is going to fall off.
+        // Horizontally adjacent cells are a column apart, and vertically adjacent cells are next to each other.
+        int step = (second - first == level.getHeight()) ? level.getHeight() : 1;
+        Tile tileA = level.tileAt(first - step, bridges);
+        Tile tileD = level.tileAt(second + step, bridges);
+
+        // This makes more sense if you consider that the player has unlimited traction with the ground,
+        // preventing it from slipping in a '@ @@' arrangement where the player is horizontal in the center.
+        return !(tileA == Tile.VOID && firstTile == Tile.VOID
+                || firstTile == Tile.VOID && secondTile == Tile.VOID
+                || secondTile == Tile.VOID && tileD == Tile.VOID);
+    }
+
+    /**
+     * Hard switches need both halves on them, which is only possible while vertical
+     */
+    private boolean isPressed(int switchIndex, int first, int second) {
+        return switchIndex != -1 && !(level.isHardSwitch(switchIndex) && first != second);
+    }
+
+    /**
+     * Presses the switches under a player that just landed.
+     * At most two switches can be under the player. They're pressed in the same order as their metadata, and a soft
+     * switch covered by both halves is pressed twice.
+     * @param first The first cell
+     * @param second The second cell
+     * @param bridges The bridge mask before landing
+     * @return The bridge mask afterwards
+     */
+    public long pressSwitches(int first, int second, long bridges) {
+        int firstSwitch = level.switchAt(first);
+        int secondSwitch = (first != second) ? level.switchAt(second) : -1;
+        int earlier = Math.min(firstSwitch, secondSwitch);
+        int later = Math.max(firstSwitch, secondSwitch);
+        if (isPressed(earlier, first, second))
+            bridges = level.pressSwitch(earlier, bridges);
+        if (isPressed(later, first, second))
+            bridges = level.pressSwitch(later, bridges);
+        return bridges;
+    }
+
+    /**
+     * Finds the teleport that fires when a player lands, which is the later one if two are pressed
+     * @param first The first cell
+     * @param second The second cell
+     * @return The switch that teleports the player, or -1 if the player stays put
+     */
+    public int teleportSwitch(int first, int second) {
+        int firstSwitch = level.switchAt(first);
+        int secondSwitch = (first != second) ? level.switchAt(second) : -1;
+        int earlier = Math.min(firstSwitch, secondSwitch);
+        int later = Math.max(firstSwitch, secondSwitch);
+        if (isPressed(later, first, second) && level.teleportFirst(later) != -1)
+            return later;
+        if (isPressed(earlier, first, second) && level.teleportFirst(earlier) != -1)
+            return earlier;
+        return -1;
+    }
+
+    /**
+     * Generates the states that could be next after a single move without the player falling
+     * @param key The packed state
+     * @param childKeys Receives the packed children, and must have room for MAX_CHILDREN
+     * @param childMoves Receives the Move ordinal that leads to each child
+     * @return How many children there are
+     */
+    public int expand(long key, long[] childKeys, byte[] childMoves) {
+        return expand(key, childKeys, childMoves, null);
+    }
+
+    /**
+     * Generates the states that could be next after a single move without the player falling
+     * @param key The packed state
+     * @param childKeys Receives the packed children, and must have room for MAX_CHILDREN
+     * @param childMoves Receives the Move ordinal that leads to each child
+     * @param childSwitches Receives a mask of the switch indices each move presses, or null if they aren't needed
+     * @return How many children there are
+     */
+    public int expand(long key, long[] childKeys, byte[] childMoves, long[] childSwitches) {
+        int first = encoder.firstCell(key);
+        int second = encoder.secondCell(key);
+        long bridges = encoder.bridges(key);
+        int count = 0;
+
+        if (!isSplit(first, second)) {
+            int span = second - first;
+            int orientation = (span == 0) ? VERTICAL : (span == 1) ? ALONG_Y : ALONG_X;
+            int index = (first * 3 + orientation) * DIRECTIONS;
+            for (int direction = 0; direction < DIRECTIONS; ++direction) {
+                int roll = rolls[index + direction];
+                if (roll == FALLS)
+                    continue;
+                int newFirst = roll >>> 3;
+                int newSecond = newFirst + spans[roll >>> 1 & 3];
+                if ((roll & 1) != 0 && !isSupported(newFirst, newSecond, false, bridges))
+                    continue;
+                count = land(newFirst, newSecond, 0, bridges, direction * 2, count, childKeys, childMoves,
+                        childSwitches);
+            }
+            return count;
+        }
+
+        int focus = encoder.focus(key);
+        for (int direction = 0; direction < DIRECTIONS; ++direction) {
+            for (int space = 0; space < 2; ++space) {
+                // Only the controlled half moves, and SPACE hands control to the other half first
+                int moving = focus ^ space;
+                int newFirst = first, newSecond = second;
+                if (moving == 0)
+                    newFirst += steps[direction];
+                else
+                    newSecond += steps[direction];
+                if (newFirst > newSecond) {
+                    int temp = newFirst;
+                    newFirst = newSecond;
+                    newSecond = temp;
+                    moving = 1 - moving;
+                }
+                boolean split = isSplit(newFirst, newSecond);
+                if (!isSupported(newFirst, newSecond, split, bridges))
+                    continue;
+                count = land(newFirst, newSecond, split ? moving : 0, bridges, direction * 2 + space, count,
+                        childKeys, childMoves, childSwitches);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Presses the switches under a player that landed without falling, and records the state it ends up in
+     * @return How many children there are now
+     */
+    private int land(int first, int second, int focus, long bridges, int move, int count, long[] childKeys,
+                     byte[] childMoves, long[] childSwitches) {
+        long childKey = landingKey(first, second, focus, bridges);
+        if (deadStates != null && deadStates.isDead(childKey)) {
+            pruned.increment();
+            return count;
+        }
+        childKeys[count] = childKey;
+        childMoves[count] = (byte) move;
+        if (childSwitches != null)
+            childSwitches[count] = pressedSwitches(first, second);
+        return count + 1;
+    }
+
+    /**
+     * Works out the state a player ends up in after landing without falling, once the switches under it have been
+     * pressed and any teleport has fired
+     * @param first The first cell landed on, which must not come after the second
+     * @param second The second cell landed on
+     * @param focus The controlled half
+     * @param bridges The bridge mask before landing
+     * @return The packed state
+     */
+    long landingKey(int first, int second, int focus, long bridges) {
+        long newBridges = pressSwitches(first, second, bridges);
+        int teleport = teleportSwitch(first, second);
+        int newFirst = first, newSecond = second, newFocus = focus;
+        if (teleport != -1) {
+            // Control goes to the half sent to the teleport's first target
+            newFirst = level.teleportFirst(teleport);
+            newSecond = level.teleportSecond(teleport);
+            newFocus = 0;
+            if (newFirst > newSecond) {
+                newFirst = level.teleportSecond(teleport);
+                newSecond = level.teleportFirst(teleport);
+                newFocus = 1;
+            }
+            if (!isSplit(newFirst, newSecond))
+                newFocus = 0;
+        }
+        return encoder.encode(newFirst, newSecond, newFocus, newBridges);
+    }
+
+    /**
+     * @param orientation A whole block's orientation
+     * @param direction The direction it rolls in
+     * @return How far its first cell moves
+     */
+    int rollOffset(int orientation, int direction) { return rollOffsets[orientation][direction]; }
+
+    /**
+     * @param orientation A whole block's orientation
+     * @param direction The direction it rolls in
+     * @return Its orientation afterwards
+     */
+    static int rolledOrientation(int orientation, int direction) { return ROLLED_ORIENTATION[orientation][direction]; }
+
+    /**
+     * @param orientation A whole block's orientation
+     * @return The second cell's offset from the first
+     */
+    int span(int orientation) { return spans[orientation]; }
+
+    /**
+     * @param first The first cell
+     * @param second The second cell, which must not come before the first
+     * @return Whether the two cells are a whole block rather than two separate halves
+     */
+    boolean isWhole(int first, int second) { return !isSplit(first, second); }
+
+    /**
+     * @return A mask of the switch indices pressed by a player landing on two cells
+     */
+    private long pressedSwitches(int first, int second) {
+        int firstSwitch = level.switchAt(first);
+        int secondSwitch = (first != second) ? level.switchAt(second) : -1;
+        long mask = 0;
+        if (isPressed(firstSwitch, first, second))
+            mask |= 1L << firstSwitch;
+        if (isPressed(secondSwitch, first, second))
+            mask |= 1L << secondSwitch;
+        return mask;
+    }
+
+    /** @return How many children have been left out because they were dead */
+    public long getPrunedCount() { return pruned.sum(); }
+
+    public CompiledLevel getLevel() { return level; }
+}
@@ -0,0 +1,178 @@
+package com.superhelix;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/// Breadth-first search that expands one whole layer of the frontier at a time on a fork-join pool.
+/// Each layer goes through three steps:
+/// 1. The frontier is cut into chunks and every chunk is expanded in parallel.
+/// 2. Children are handed to an owner by hashing their key. Each owner has its own visited set, which nothing else
+///    touches, and walks its children in frontier order, so the first child to reach a state keeps it.
+/// 3. The surviving children are collected in frontier order to form the next layer.
+/// Which child survives is decided exactly as in StateGraph, so the move pattern is identical for any thread count.
+public class ParallelStateGraph {
+    private static final int CHUNK_SIZE = 512;
+
+    /// The children of one chunk of the frontier, with the indices of the children each owner is responsible for
+    private static class Chunk {
+        final long[] keys = new long[CHUNK_SIZE * MoveGenerator.MAX_CHILDREN];
+        final int[] parents = new int[keys.length];
+        final byte[] moves = new byte[keys.length];
+        int count;
+        int[][] owned;
+        boolean[] kept;
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param threads How many threads to expand the frontier with
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, SearchStats stats, int threads) {
+        return solve(level, stats, threads, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Searches for a minimal player move pattern within a budget, which is checked before each layer
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param threads How many threads to expand the frontier with
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public static SolveResult solve(Level level, SearchStats stats, int threads, SolveBudget budget) {
+        long startTime = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return search(new CompiledLevel(level), stats, threads, pool, new BudgetTracker(budget, startTime),
+                    startTime);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static long visitedSize(LongHashSet[] visited) {
+        long size = 0;
+        for (LongHashSet set : visited)
+            size += set.size();
+        return size;
+    }
+
+    private static long footprintBytes(LongHashSet[] visited) {
+        long bytes = 0;
+        for (LongHashSet set : visited)
+            bytes += set.footprintBytes() + (long) set.size() * StateGraph.NODE_BYTES;
+        return bytes;
+    }
+
+    private static int ownerOf(long key, int owners) {
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> 40) % owners;
+    }
+
+    private static SolveResult search(CompiledLevel compiled, SearchStats stats, int threads, ForkJoinPool pool,
+                                      BudgetTracker tracker, long startTime) {
+        int owners = threads;
+        LongHashSet[] visited = new LongHashSet[owners];
+        for (int i = 0; i < owners; ++i)
+            visited[i] = new LongHashSet();
+        DeadStateAnalysis deadStates = new DeadStateAnalysis(compiled);
+        stats.setLevelAnalysis(compiled, deadStates);
+        MoveGenerator generator = new MoveGenerator(compiled, deadStates);
+
+        // Every state reached, in the order it was reached, so each layer follows the one before
+        long[] keys = new long[1024];
+        int[] parents = new int[1024];
+        byte[] moves = new byte[1024];
+        int count = 0;
+
+        keys[count] = compiled.getStartKey();
+        parents[count++] = -1;
+        visited[ownerOf(compiled.getStartKey(), owners)].add(compiled.getStartKey());
+        int layerStart = 0;
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+        long expanded = 0;
+
+        for (int depth = 0; layerStart < count; ++depth) {
+            int start = layerStart, size = count - layerStart;
+            long[] layerKeys = keys;
+            // A layer is expanded all at once, so it only goes ahead if it fits in what's left of the budget
+            SolveResult.Status limit = tracker.check(expanded + size, footprintBytes(visited), depth, size);
+            if (limit != null) {
+                status = limit;
+                break;
+            }
+            Chunk[] chunks = new Chunk[(size + CHUNK_SIZE - 1) / CHUNK_SIZE];
+
+            pool.submit(() -> IntStream.range(0, chunks.length).parallel().forEach(c -> {
+                Chunk chunk = new Chunk();
+                long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+                byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+                for (int i = start + c * CHUNK_SIZE; i < start + Math.min(size, (c + 1) * CHUNK_SIZE); ++i) {
+                    int childCount = generator.expand(layerKeys[i], childKeys, childMoves);
+                    for (int j = 0; j < childCount; ++j) {
+                        chunk.keys[chunk.count] = childKeys[j];
+                        chunk.parents[chunk.count] = i;
+                        chunk.moves[chunk.count++] = childMoves[j];
+                    }
+                }
+
+                int[] counts = new int[owners];
+                int[] ownerOfChild = new int[chunk.count];
+                for (int i = 0; i < ownerOfChild.length; ++i)
+                    ++counts[ownerOfChild[i] = ownerOf(chunk.keys[i], owners)];
+                chunk.owned = new int[owners][];
+                for (int owner = 0; owner < owners; ++owner)
+                    chunk.owned[owner] = new int[counts[owner]];
+                Arrays.fill(counts, 0);
+                for (int i = 0; i < ownerOfChild.length; ++i)
+                    chunk.owned[ownerOfChild[i]][counts[ownerOfChild[i]]++] = i;
+                chunk.kept = new boolean[ownerOfChild.length];
+                chunks[c] = chunk;
+            })).join();
+
+            pool.submit(() -> IntStream.range(0, owners).parallel().forEach(owner -> {
+                for (Chunk chunk : chunks)
+                    for (int i : chunk.owned[owner])
+                        chunk.kept[i] = visited[owner].add(chunk.keys[i]);
+            })).join();
+
+            layerStart = count;
+            for (Chunk chunk : chunks) {
+                stats.addGenerated(chunk.count);
+                for (int i = 0; i < chunk.count; ++i) {
+                    if (!chunk.kept[i]) {
+                        stats.addDuplicates(1);
+                        continue;
+                    }
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, count * 2);
+                        parents = Arrays.copyOf(parents, count * 2);
+                        moves = Arrays.copyOf(moves, count * 2);
+                    }
+                    keys[count] = chunk.keys[i];
+                    parents[count] = chunk.parents[i];
+                    moves[count++] = chunk.moves[i];
+                    if (compiled.isGoal(chunk.keys[i])) {
+                        stats.addExpanded(size);
+                        stats.setVisitedSize(visitedSize(visited));
+                        stats.setPrunedStates(generator.getPrunedCount());
+                        stats.setSearchNanos(System.nanoTime() - startTime);
+                        return new SolveResult(SolveResult.Status.SOLVED,
+                                StateGraph.reconstructMovePattern(count - 1, parents, moves, stats));
+                    }
+                }
+            }
+            stats.addExpanded(size);
+            expanded += size;
+            stats.updatePeakQueueSize(count - layerStart);
+        }
+        stats.setVisitedSize(visitedSize(visited));
+        stats.setPrunedStates(generator.getPrunedCount());
+        stats.setSearchNanos(System.nanoTime() - startTime);
+
+        return new SolveResult(status, new ArrayList<>());
+    }
+}
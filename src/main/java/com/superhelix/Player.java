@@ -64,9 +64,8 @@ public class Player {
     public Player newMovedPlayer(Direction direction, boolean switchFocus) {
         Position newFirst, newSecond;
 
-        int[] offset = direction.toOffset();
-        int dx = offset[0];
-        int dy = offset[1];
+        int dx = direction.dx();
+        int dy = direction.dy();
 
         int newFocus = (switchFocus) ? 1 - focus : focus;
 
@@ -126,11 +125,9 @@ public class Player {
         return new Player(newFirst, newSecond, newFocus);
     }
 
-    public String formatIdentifier() {
-        return "(%d,%d),(%d,%d),".formatted(first.x(), first.y(), second.x(), second.y());
-    }
-
     public Position getFirst() { return first; }
     public Position getSecond() { return second; }
     public boolean isSplit() { return isSplit; }
+    /** @return Which of the two positions is being controlled, which is always 0 unless the player is split */
+    public int getFocus() { return isSplit ? focus : 0; }
 }
@@ -1,3 +0,0 @@
-package com.superhelix;
-
-public record PlayerChange(Player player, String description) {  }
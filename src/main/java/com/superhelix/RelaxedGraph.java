@@ -0,0 +1,133 @@
+package com.superhelix;
+
+import java.util.Arrays;
+
+/// Every placement (cells and focus, without bridges) the player can get to in a relaxed level (see
+/// CompiledLevel.relax), walked forwards from the start, along with the moves between them. Nothing is expanded
+/// past the goal.
+/// Teleports can leave the two halves on any pair of floor cells, so with them the number of placements grows with
+/// the square of the floor. The walk therefore gives up after MAX_PLACEMENTS, and an incomplete graph keeps nothing:
+/// whatever uses it has to assume every placement can be reached and can reach the goal.
+public class RelaxedGraph {
+    /// Walking takes about 80 bytes per placement at most, so this keeps the walk under about 20 MB
+    public static final int MAX_PLACEMENTS = 1 << 18;
+
+    /// The placements in the order they were reached, so the start comes first
+    private final long[] placements;
+    /// The children of placement i are edgeTargets[edgeStarts[i]] up to edgeTargets[edgeStarts[i + 1]]
+    private final int[] edgeStarts;
+    private final int[] edgeTargets;
+    private final LongIntHashMap indices;
+    private final int goalIndex;
+    private final boolean complete;
+
+    /**
+     * Walks a relaxed level
+     * @param relaxed The relaxed level
+     */
+    public RelaxedGraph(CompiledLevel relaxed) {
+        this(relaxed, MAX_PLACEMENTS);
+    }
+
+    /**
+     * Walks a relaxed level
+     * @param relaxed The relaxed level
+     * @param maxPlacements How many placements to walk before giving up
+     */
+    public RelaxedGraph(CompiledLevel relaxed, int maxPlacements) {
+        MoveGenerator generator = new MoveGenerator(relaxed);
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+        LongIntHashMap reached = new LongIntHashMap(1024, -1);
+        long[] keys = new long[1024];
+        int[] starts = new int[1024 + 1];
+        int[] targets = new int[1024];
+        int count = 0, edgeCount = 0;
+        int goal = -1;
+        boolean finished = true;
+
+        // The keys double as the queue, since a placement is expanded in the order it was reached
+        keys[count] = relaxed.getStartKey();
+        reached.put(keys[count++], 0);
+        walk:
+        for (int i = 0; i < count; ++i) {
+            starts[i] = edgeCount;
+            if (relaxed.isGoal(keys[i])) {
+                goal = i;
+                continue;
+            }
+            int childCount = generator.expand(keys[i], childKeys, childMoves);
+            for (int c = 0; c < childCount; ++c) {
+                int child = reached.get(childKeys[c]);
+                if (child == -1) {
+                    if (count == maxPlacements) {
+                        finished = false;
+                        break walk;
+                    }
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, count * 2);
+                        starts = Arrays.copyOf(starts, count * 2 + 1);
+                    }
+                    child = count;
+                    keys[count++] = childKeys[c];
+                    reached.put(childKeys[c], child);
+                }
+                if (edgeCount == targets.length)
+                    targets = Arrays.copyOf(targets, edgeCount * 2);
+                targets[edgeCount++] = child;
+            }
+        }
+
+        complete = finished;
+        if (!complete) {
+            placements = new long[0];
+            edgeStarts = new int[1];
+            edgeTargets = new int[0];
+            indices = new LongIntHashMap(16, -1);
+            goalIndex = -1;
+            return;
+        }
+        starts[count] = edgeCount;
+        placements = Arrays.copyOf(keys, count);
+        edgeStarts = Arrays.copyOf(starts, count + 1);
+        edgeTargets = Arrays.copyOf(targets, edgeCount);
+        indices = reached;
+        goalIndex = goal;
+    }
+
+    /** @return Whether every reachable placement was walked, without which the graph is empty */
+    public boolean isComplete() { return complete; }
+
+    /** @return How many placements were walked */
+    public int size() { return placements.length; }
+
+    /**
+     * @param index A placement's index
+     * @return The placement's key in the relaxed level
+     */
+    public long getPlacement(int index) { return placements[index]; }
+
+    /**
+     * @param placement A placement's key in the relaxed level
+     * @return Its index, or -1 if it can't be reached
+     */
+    public int indexOf(long placement) { return indices.get(placement); }
+
+    /** @return The goal's index, or -1 if it can't be reached */
+    public int getGoalIndex() { return goalIndex; }
+
+    /** @return How many moves the graph holds */
+    public int getEdgeCount() { return edgeTargets.length; }
+
+    /**
+     * @param index A placement's index
+     * @return The index of its first move in getEdgeTarget, whose moves run up to the next placement's first one
+     */
+    public int getEdgeStart(int index) { return edgeStarts[index]; }
+
+    /**
+     * @param edge A move's index
+     * @return The index of the placement the move leads to
+     */
+    public int getEdgeTarget(int edge) { return edgeTargets[edge]; }
+}
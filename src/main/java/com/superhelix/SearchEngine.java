@@ -0,0 +1,94 @@
+package com.superhelix;
+
+import java.util.List;
+
+public enum SearchEngine {
+    BFS,        // Breadth-first search over every state
+    ASTAR,      // Best-first search guided by DistanceHeuristic
+    DENSE,      // Breadth-first search with one byte per possible state
+    EXTERNAL,   // Breadth-first search with its layers on disk
+    MACRO,      // Dijkstra's algorithm over roll sequences between switches
+    IDASTAR,    // Iterative-deepening A* in a fixed amount of memory
+    BITBOARD;   // Breadth-first search a whole layer at a time with bitboards
+
+    /**
+     * Solves a level with this engine on a single thread
+     * @param level The level to solve
+     * @param stats The counters to fill in
+     * @return The keys to be pressed to complete the level, or an empty list if it can't be completed
+     */
+    public List<String> solve(Level level, SearchStats stats) {
+        return solve(level, stats, 1);
+    }
+
+    /**
+     * Solves a level with this engine, and records the solve as a Flight Recorder event
+     * @param level The level to solve
+     * @param stats The counters to fill in
+     * @param threads How many threads the engine may use, which only breadth-first search takes advantage of
+     * @return The keys to be pressed to complete the level, or an empty list if it can't be completed
+     */
+    public List<String> solve(Level level, SearchStats stats, int threads) {
+        return solve(level, stats, threads, ExternalStateGraph.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Solves a level with this engine, and records the solve as a Flight Recorder event
+     * @param level The level to solve
+     * @param stats The counters to fill in
+     * @param threads How many threads the engine may use, which only breadth-first search takes advantage of
+     * @param memoryBudget How many bytes of heap the external engine may buffer states in, and the IDA* engine may
+     *                     fill with its transposition table
+     * @return The keys to be pressed to complete the level, or an empty list if it can't be completed
+     */
+    public List<String> solve(Level level, SearchStats stats, int threads, long memoryBudget) {
+        return solve(level, stats, threads, memoryBudget, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Solves a level with this engine on a single thread within a budget
+     * @param level The level to solve
+     * @param stats The counters to fill in
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public SolveResult solve(Level level, SearchStats stats, SolveBudget budget) {
+        return solve(level, stats, 1, ExternalStateGraph.DEFAULT_MEMORY_BUDGET, budget);
+    }
+
+    /**
+     * Solves a level with this engine within a budget.
+     * Engines that expand a whole layer at once (breadth-first search on several threads and bitboards) check the
+     * budget between layers, so they stop short of a layer that would go over the expansion limit, but may run past
+     * the time limit by as long as one layer takes. The external and IDA* engines size their buffers by the smaller
+     * of the memory budget and the budget's memory limit.
+     * @param level The level to solve
+     * @param stats The counters to fill in
+     * @param threads How many threads breadth-first search may use
+     * @param memoryBudget Roughly how many bytes the external and IDA* engines may keep in memory
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public SolveResult solve(Level level, SearchStats stats, int threads, long memoryBudget, SolveBudget budget) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long memory = Math.min(memoryBudget, budget.maxMemoryBytes());
+        SolveResult result = switch (this) {
+            case BFS -> (threads == 1) ? Solver.forCurrentThread().solve(level, stats, budget)
+                    : ParallelStateGraph.solve(level, stats, threads, budget);
+            case ASTAR -> AStarSearch.solve(level, stats, budget);
+            case DENSE -> DenseSearch.solve(level, stats, budget);
+            case EXTERNAL -> ExternalStateGraph.solve(level, stats, memory, budget);
+            case MACRO -> MacroSearch.solve(level, stats, budget);
+            case IDASTAR -> IdaStarSearch.solve(level, stats, memory, budget);
+            case BITBOARD -> BitboardSearch.solve(level, stats, budget);
+        };
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = (threads > 1 && this == BFS) ? "%s x%d".formatted(this, threads) : toString();
+            event.fill(stats, result.moves().size());
+            event.commit();
+        }
+        return result;
+    }
+}
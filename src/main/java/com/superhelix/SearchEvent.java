@@ -0,0 +1,66 @@
+package com.superhelix;
+
+import jdk.jfr.*;
+
+/// A Flight Recorder event covering one solve, carrying the same numbers as SearchStats.
+/// The event's duration is the whole solve, including any per-level precomputation the engine does.
+@Name("com.superhelix.Search")
+@Label("Bloxorz Search")
+@Category("Bloxorz")
+@Description("The work done by one solve of a level")
+@StackTrace(false)
+class SearchEvent extends Event {
+    @Label("Engine")
+    String engine;
+
+    @Label("Solution Length")
+    int solutionLength;
+
+    @Label("Nodes Generated")
+    long nodesGenerated;
+
+    @Label("Nodes Expanded")
+    long nodesExpanded;
+
+    @Label("Duplicate Hits")
+    long duplicateHits;
+
+    @Label("Peak Queue Size")
+    long peakQueueSize;
+
+    @Label("Visited States")
+    long visitedSize;
+
+    @Label("Pruned States")
+    long prunedStates;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+
+    @Label("Search Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long searchTime;
+
+    @Label("Reconstruction Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long reconstructionTime;
+
+    /**
+     * Copies the numbers of a finished solve into the event
+     * @param stats The stats of the solve
+     * @param solutionLength How many moves the solution has
+     */
+    void fill(SearchStats stats, int solutionLength) {
+        this.solutionLength = solutionLength;
+        nodesGenerated = stats.getNodesGenerated();
+        nodesExpanded = stats.getNodesExpanded();
+        duplicateHits = stats.getDuplicateHits();
+        peakQueueSize = stats.getPeakQueueSize();
+        visitedSize = stats.getVisitedSize();
+        prunedStates = stats.getPrunedStates();
+        parseTime = stats.getParseNanos();
+        searchTime = stats.getSearchNanos();
+        reconstructionTime = stats.getReconstructionNanos();
+    }
+}
@@ -0,0 +1,136 @@
+package com.superhelix;
+
+/// Counters and timings filled in while a level is parsed and solved.
+public class SearchStats {
+    private long nodesGenerated;
+    private long nodesExpanded;
+    private long duplicateHits;
+    private long peakQueueSize;
+    private long visitedSize;
+    private long prunedStates;
+    private int deadSwitches;
+    private int originalBridgeBits;
+    private int bridgeBits;
+    private long reachablePlacements;
+    private long parseNanos;
+    private long searchNanos;
+    private long reconstructionNanos;
+
+    void addGenerated(int count) { nodesGenerated += count; }
+
+    void addExpanded() { ++nodesExpanded; }
+
+    void addExpanded(int count) { nodesExpanded += count; }
+
+    void addDuplicates(long count) { duplicateHits += count; }
+
+    void updatePeakQueueSize(long size) { peakQueueSize = Math.max(peakQueueSize, size); }
+
+    void setVisitedSize(long size) { visitedSize = size; }
+
+    void setPrunedStates(long count) { prunedStates = count; }
+
+    void setDeadSwitches(int count) { deadSwitches = count; }
+
+    void setBridgeBits(int original, int reduced) {
+        originalBridgeBits = original;
+        bridgeBits = reduced;
+    }
+
+    void setReachablePlacements(long count) { reachablePlacements = count; }
+
+    /**
+     * Records what was worked out about a level before searching it
+     * @param compiled The compiled level
+     * @param deadStates The level's dead state analysis
+     */
+    void setLevelAnalysis(CompiledLevel compiled, DeadStateAnalysis deadStates) {
+        setDeadSwitches(deadStates.getDeadSwitchCount());
+        setBridgeBits(compiled.getLevel().tilesMetadata().size(), compiled.getBridgeCount());
+        setReachablePlacements(deadStates.getReachablePlacements());
+    }
+
+    public void setParseNanos(long nanos) { parseNanos = nanos; }
+
+    void setSearchNanos(long nanos) { searchNanos = nanos; }
+
+    void setReconstructionNanos(long nanos) { reconstructionNanos = nanos; }
+
+    /** @return How many children were produced by expanding states, including ones that were already visited */
+    public long getNodesGenerated() { return nodesGenerated; }
+
+    /** @return How many states had their children generated */
+    public long getNodesExpanded() { return nodesExpanded; }
+
+    /** @return How many generated children were dropped because their state had already been reached */
+    public long getDuplicateHits() { return duplicateHits; }
+
+    /** @return The most states that were waiting to be expanded at once */
+    public long getPeakQueueSize() { return peakQueueSize; }
+
+    /** @return How many distinct states had been reached when the search stopped */
+    public long getVisitedSize() { return visitedSize; }
+
+    /** @return How many children were dropped because the goal can't be reached from them */
+    public long getPrunedStates() { return prunedStates; }
+
+    /** @return The fraction of all successors that were dropped as dead */
+    public double getPruningRatio() {
+        long successors = nodesGenerated + prunedStates;
+        return (successors > 0) ? (double) prunedStates / successors : 0;
+    }
+
+    /** @return How many switches could only be pressed on the way to dead states */
+    public int getDeadSwitches() { return deadSwitches; }
+
+    /** @return How many bits the level's tile groups would take up in a state key if every one had its own */
+    public int getOriginalBridgeBits() { return originalBridgeBits; }
+
+    /** @return How many bits a state key spends on bridges (see CompiledLevel) */
+    public int getBridgeBits() { return bridgeBits; }
+
+    /** @return How many placements (cells and focus, without bridges) the player can get to at all */
+    public long getReachablePlacements() { return reachablePlacements; }
+
+    /**
+     * @param bits A number of bridge bits
+     * @return The most states the level could have with that many bridge bits
+     */
+    public double getStateSpaceBound(int bits) { return reachablePlacements * Math.pow(2, bits); }
+
+    public long getParseNanos() { return parseNanos; }
+
+    public long getSearchNanos() { return searchNanos; }
+
+    public long getReconstructionNanos() { return reconstructionNanos; }
+
+    @Override
+    public String toString() {
+        return """
+                Nodes generated:     %d
+                Nodes expanded:      %d
+                Duplicate hits:      %d
+                Peak queue size:     %d
+                Visited states:      %d
+                Pruned states:       %d (%.1f%% of successors)
+                Dead switches:       %d
+                Bridge bits:         %d -> %d (at most %.3g -> %.3g states)
+                Parse time:          %.3f ms
+                Search time:         %.3f ms
+                Reconstruction time: %.3f ms
+                """.formatted(nodesGenerated, nodesExpanded, duplicateHits, peakQueueSize, visitedSize,
+                prunedStates, 100 * getPruningRatio(), deadSwitches, originalBridgeBits, bridgeBits,
+                getStateSpaceBound(originalBridgeBits), getStateSpaceBound(bridgeBits), parseNanos / 1e6, searchNanos / 1e6, reconstructionNanos / 1e6);
+    }
+
+    /**
+     * @return The stats as a single-line JSON object, with times in nanoseconds
+     */
+    public String toJson() {
+        return ("{\"nodesGenerated\":%d,\"nodesExpanded\":%d,\"duplicateHits\":%d,\"peakQueueSize\":%d,"
+                + "\"visitedSize\":%d,\"prunedStates\":%d,\"deadSwitches\":%d,"
+                + "\"originalBridgeBits\":%d,\"bridgeBits\":%d,\"reachablePlacements\":%d,\"parseNanos\":%d,\"searchNanos\":%d,\"reconstructionNanos\":%d}")
+                .formatted(nodesGenerated, nodesExpanded, duplicateHits, peakQueueSize, visitedSize,
+                        prunedStates, deadSwitches, originalBridgeBits, bridgeBits, reachablePlacements, parseNanos, searchNanos, reconstructionNanos);
+    }
+}
@@ -0,0 +1,246 @@
+package com.superhelix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/// Remembers solved levels between runs in a small binary file.
+/// Levels are keyed by a hash of their tile matrix and parsed attributes, so reformatting a level's files doesn't
+/// miss the cache but any change to what the solver sees does. Moves are stored as one Move ordinal per byte.
+/// The whole file is dropped when it was written by a different SOLVER_VERSION, and the least recently used entries
+/// are evicted whenever there are more than the maximum.
+///
+/// File layout (big-endian): magic, format version, solver version, clock, entry count, and then for every entry
+/// its 16-byte key, the clock value it was last used at, its move count and its moves.
+public class SolutionCache {
+    /// Bump this whenever a change could alter the moves returned for a level or what HintTable stores for it, so old
+    /// caches and hint tables are thrown away
+    public static final int SOLVER_VERSION = 2;
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final int MAGIC = 0x42585343; // "BXSC"
+    private static final int FORMAT_VERSION = 1;
+
+    record Key(long high, long low) { }
+
+    private static class Entry {
+        final byte[] moves;
+        long lastUsed;
+
+        Entry(byte[] moves, long lastUsed) {
+            this.moves = moves;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private final Path file;
+    private final int maxEntries;
+    private final Map<Key, Entry> entries = new HashMap<>();
+    private long clock;
+    private boolean modified;
+
+    private SolutionCache(Path file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Opens a cache file, starting with an empty cache if it doesn't exist, is unreadable or is out of date
+     * @param file The cache file
+     * @param maxEntries How many solutions to keep at most
+     * @return The cache
+     * @throws IOException If the file exists but can't be read
+     */
+    public static SolutionCache open(Path file, int maxEntries) throws IOException {
+        SolutionCache cache = new SolutionCache(file, maxEntries);
+        if (!Files.isRegularFile(file))
+            return cache;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getInt() != SOLVER_VERSION)
+                return cache;
+            long clock = buffer.getLong();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; ++i) {
+                Key key = new Key(buffer.getLong(), buffer.getLong());
+                long lastUsed = buffer.getLong();
+                byte[] moves = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(moves);
+                cache.entries.put(key, new Entry(moves, lastUsed));
+            }
+            cache.clock = clock;
+        } catch (BufferUnderflowException e) {
+            // A truncated file is treated like a missing one
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Looks up the solution of a level
+     * @param level The level
+     * @param engine The engine the solution has to come from
+     * @return The moves, or null if the level hasn't been cached
+     */
+    public synchronized List<String> get(Level level, SearchEngine engine) {
+        Entry entry = entries.get(keyOf(level, engine));
+        if (entry == null)
+            return null;
+        entry.lastUsed = ++clock;
+        modified = true;
+
+        List<String> moves = new ArrayList<>(entry.moves.length);
+        for (byte move : entry.moves)
+            moves.add(Move.fromOrdinal(move).description());
+        return moves;
+    }
+
+    /**
+     * Remembers the solution of a level, evicting the least recently used solutions if there are too many
+     * @param level The level
+     * @param engine The engine the solution came from
+     * @param moves The moves, which may be empty for unsolvable levels
+     */
+    public synchronized void put(Level level, SearchEngine engine, List<String> moves) {
+        if (moves.size() > 0xffff)
+            return;
+        byte[] encoded = new byte[moves.size()];
+        for (int i = 0; i < encoded.length; ++i)
+            encoded[i] = (byte) Move.fromDescription(moves.get(i)).ordinal();
+        entries.put(keyOf(level, engine), new Entry(encoded, ++clock));
+        modified = true;
+
+        if (entries.size() > maxEntries) {
+            List<Map.Entry<Key, Entry>> byAge = new ArrayList<>(entries.entrySet());
+            byAge.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+            for (int i = 0; i < byAge.size() - maxEntries; ++i)
+                entries.remove(byAge.get(i).getKey());
+        }
+    }
+
+    /**
+     * Writes the cache back to its file if anything changed, replacing the file in one step
+     * @throws IOException If the file can't be written
+     */
+    public synchronized void save() throws IOException {
+        if (!modified)
+            return;
+
+        int size = 4 * Integer.BYTES + Long.BYTES;
+        for (Entry entry : entries.values())
+            size += 3 * Long.BYTES + Short.BYTES + entry.moves.length;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(SOLVER_VERSION).putLong(clock).putInt(entries.size());
+        for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+            buffer.putLong(entry.getKey().high()).putLong(entry.getKey().low());
+            buffer.putLong(entry.getValue().lastUsed);
+            buffer.putShort((short) entry.getValue().moves.length);
+            buffer.put(entry.getValue().moves);
+        }
+        buffer.flip();
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        modified = false;
+    }
+
+    public synchronized int size() { return entries.size(); }
+
+    /**
+     * @param level The level
+     * @param engine The engine, since different engines may pick different solutions of the same length
+     * @return The key
+     */
+    private static Key keyOf(Level level, SearchEngine engine) {
+        return keyOf(level, engine.ordinal());
+    }
+
+    /**
+     * Hashes a level on its own, for files that belong to one level but don't depend on the engine
+     * @param level The level
+     * @return The key
+     */
+    static Key keyOf(Level level) {
+        return keyOf(level, 0xff);
+    }
+
+    /**
+     * Hashes everything about a level that the solver reads. Rows lose their trailing void and the matrix loses its
+     * trailing empty rows, and metadata is visited in identifier order.
+     * @param level The level
+     * @param tag A byte hashed in first, which tells apart keys made for different purposes
+     * @return The key
+     */
+    private static Key keyOf(Level level, int tag) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(tag);
+
+            int rows = level.tiles().size();
+            while (rows > 0 && level.tiles().get(rows - 1).stream().allMatch(tile -> tile == Tile.VOID))
+                --rows;
+            out.writeInt(rows);
+            for (List<Tile> row : level.tiles().subList(0, rows)) {
+                int length = row.size();
+                while (length > 0 && row.get(length - 1) == Tile.VOID)
+                    --length;
+                out.writeInt(length);
+                for (Tile tile : row.subList(0, length))
+                    out.writeByte(tile.ordinal());
+            }
+
+            for (TileMetadata metadata : new TreeMap<>(level.tilesMetadata()).values()) {
+                out.writeChar(metadata.getId());
+                out.writeBoolean(metadata.getStartingBridgeState());
+                writePositions(out, metadata.getPositions());
+                SwitchAttribute attr = metadata.getSwitchAttribute();
+                out.writeBoolean(attr != null);
+                if (attr == null)
+                    continue;
+                out.writeByte(attr.activationType().ordinal());
+                out.writeInt(attr.bridgeActions().size());
+                for (TileAction action : attr.bridgeActions()) {
+                    out.writeChar(action.tileId());
+                    out.writeByte(action.effect().ordinal());
+                }
+                writePositions(out, (attr.teleportLocations() != null)
+                        ? Arrays.asList(attr.teleportLocations()) : List.of());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Can't happen when writing to memory
+        }
+
+        try {
+            ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray()));
+            return new Key(digest.getLong(), digest.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has to provide SHA-256
+        }
+    }
+
+    private static void writePositions(DataOutputStream out, List<Position> positions) throws IOException {
+        out.writeInt(positions.size());
+        for (Position pos : positions) {
+            out.writeInt(pos.x());
+            out.writeInt(pos.y());
+        }
+    }
+}
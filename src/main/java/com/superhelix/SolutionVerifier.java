@@ -0,0 +1,273 @@
+package com.superhelix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/// Replays move lists against levels to check solutions without searching again.
+/// Moves are applied with the game's own rules, through Player and the tile grid Level.applyState gives, rather than
+/// the MoveGenerator the solver searches with, so a bug in the search rules can't vouch for its own solutions. The
+/// solver's packed state is replayed alongside, and a move after which the two disagree fails the solution.
+/// A whole file in the format of solutions.txt can be checked at once: every level named in it is loaded from the
+/// working directory, or else relative to the file's directory, and its listed moves, with runs like "RIGHT x 2"
+/// expanded, are replayed from the start.
+public class SolutionVerifier {
+    private static final String SOLUTION_HEADER = "Here's the solution to: ";
+    private static final Pattern UNSOLVABLE_HEADER = Pattern.compile("Sorry, I can't find a solution to (.+)\\.");
+    private static final Pattern MOVE_LINE = Pattern.compile("\\s*(\\d+)\\. (.+?)(?: x (\\d+))?");
+
+    /**
+     * The outcome of replaying a move list
+     * @param solved Whether every move was legal and the last one left the player upright on the goal
+     * @param moveCount How many moves were replayed
+     * @param failedMove The 1-based index of the first illegal move, or 0 if every move was legal
+     * @param reason Why the moves don't solve the level, or null if they do
+     */
+    public record Result(boolean solved, int moveCount, int failedMove, String reason) { }
+
+    /**
+     * The moves a solutions file lists for one level
+     * @param name The level's path as written in the file
+     * @param moves The moves, or an empty list if the file says the level has no solution
+     */
+    public record ListedSolution(String name, List<String> moves) { }
+
+    /**
+     * Replays moves from the start of a level
+     * @param level The level
+     * @param moves The move descriptions, such as "LEFT" or "SPACE UP"
+     * @return The result
+     */
+    public static Result replay(Level level, List<String> moves) {
+        CompiledLevel compiled = new CompiledLevel(level);
+        MoveGenerator generator = new MoveGenerator(compiled);
+        StateEncoder encoder = compiled.getEncoder();
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+
+        Map<Character, Boolean> states = new TreeMap<>();
+        for (Map.Entry<Character, TileMetadata> entry : level.tilesMetadata().entrySet())
+            states.put(entry.getKey(), entry.getValue().getStartingBridgeState());
+        Position start = level.tilesMetadata().get('$').getPositions().get(0);
+        Position goal = level.tilesMetadata().get('^').getPositions().get(0);
+        Player player = new Player(start, start);
+        long key = compiled.getStartKey();
+
+        for (int i = 0; i < moves.size(); ++i) {
+            Move move;
+            try {
+                move = Move.fromDescription(moves.get(i));
+            } catch (IllegalArgumentException e) {
+                return new Result(false, moves.size(), i + 1, "'%s' isn't a move".formatted(moves.get(i)));
+            }
+            if (isAtGoal(player, goal))
+                return new Result(false, moves.size(), i + 1, "the level was already finished");
+            if (move.switchesFocus() && !player.isSplit()) {
+                return new Result(false, moves.size(), i + 1,
+                        "%s: there is no other half to switch to".formatted(move.description()));
+            }
+
+            Player moved = player.newMovedPlayer(move.direction(), move.switchesFocus());
+            if (!isSupported(level.applyState(states), moved)) {
+                return new Result(false, moves.size(), i + 1,
+                        "%s: the player falls off the level".formatted(move.description()));
+            }
+            player = pressSwitches(level, states, moved);
+
+            int count = generator.expand(key, childKeys, childMoves);
+            long next = -1;
+            for (int c = 0; c < count; ++c)
+                if (childMoves[c] == move.ordinal())
+                    next = childKeys[c];
+            if (next != encoder.encode(player, compiled.bridgesOf(states))) {
+                return new Result(false, moves.size(), i + 1,
+                        "%s: the solver's rules disagree with the game's".formatted(move.description()));
+            }
+            key = next;
+        }
+        if (!isAtGoal(player, goal))
+            return new Result(false, moves.size(), 0, "the player doesn't end upright on the goal");
+        return new Result(true, moves.size(), 0, null);
+    }
+
+    private static boolean isAtGoal(Player player, Position goal) {
+        return player.isVertical() && player.getFirst().equals(goal);
+    }
+
+    /**
+     * @return The tile at a position, or void if it's off the grid
+     */
+    private static Tile tileAt(List<List<Tile>> tiles, int x, int y) {
+        if (y < 0 || y >= tiles.size() || x < 0 || x >= tiles.get(y).size())
+            return Tile.VOID;
+        return tiles.get(y).get(x);
+    }
+
+    /**
+     * Decides whether a player stays on the level
+     * @param tiles The tiles, with the bridges in their current state
+     * @param player The player after moving
+     * @return Whether the player is supported
+     */
+    private static boolean isSupported(List<List<Tile>> tiles, Player player) {
+        int x1 = player.getFirst().x(), y1 = player.getFirst().y();
+        int x2 = player.getSecond().x(), y2 = player.getSecond().y();
+        Tile first = tileAt(tiles, x1, y1);
+        Tile second = tileAt(tiles, x2, y2);
+        if (player.isSplit())
+            return first != Tile.VOID && second != Tile.VOID;
+        if (player.isVertical())
+            return first != Tile.VOID && second != Tile.WEAK_FLOOR;
+
+        // A lying block only falls if its centre of mass is over void, which is when two adjacent tiles of the four
+        // in its row or column, including the one past each end, are void
+        Tile before = (x1 != x2) ? tileAt(tiles, x1 - 1, y1) : tileAt(tiles, x1, y1 - 1);
+        Tile after = (x1 != x2) ? tileAt(tiles, x2 + 1, y1) : tileAt(tiles, x1, y2 + 1);
+        return !(before == Tile.VOID && first == Tile.VOID || first == Tile.VOID && second == Tile.VOID
+                || second == Tile.VOID && after == Tile.VOID);
+    }
+
+    /**
+     * Presses every switch under a player that landed, in the order the level lists them
+     * @param level The level
+     * @param states The state of every tile group, which is updated
+     * @param player The player after moving
+     * @return The player, which a teleport may have moved
+     */
+    private static Player pressSwitches(Level level, Map<Character, Boolean> states, Player player) {
+        Position first = player.getFirst(), second = player.getSecond();
+        Player landed = player;
+        for (TileMetadata metadata : level.tilesMetadata().values()) {
+            SwitchAttribute attr = metadata.getSwitchAttribute();
+            if (attr == null)
+                continue;
+            for (Position position : metadata.getPositions()) {
+                boolean pressed = (attr.activationType() == ActivationType.SOFT)
+                        ? position.equals(first) || position.equals(second)
+                        : position.equals(first) && position.equals(second);
+                if (!pressed)
+                    continue;
+                if (attr.teleportLocations() != null)
+                    landed = new Player(attr.teleportLocations()[0], attr.teleportLocations()[1]);
+                for (TileAction action : attr.bridgeActions()) {
+                    states.put(action.tileId(), switch (action.effect()) {
+                        case ON -> true;
+                        case OFF -> false;
+                        case TOGGLE -> !states.get(action.tileId());
+                    });
+                }
+            }
+        }
+        return landed;
+    }
+
+    /**
+     * Reads a file in the format of solutions.txt
+     * @param file The file
+     * @return Every level's listed solution, in the order of the file
+     * @throws IOException If the file can't be read, or a line isn't part of the format
+     */
+    public static List<ListedSolution> readSolutions(Path file) throws IOException {
+        List<ListedSolution> solutions = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file);
+        List<String> moves = null;
+        for (int lineNumber = 1; lineNumber <= lines.size(); ++lineNumber) {
+            String line = lines.get(lineNumber - 1);
+            Matcher matcher;
+            if (line.startsWith(SOLUTION_HEADER)) {
+                moves = new ArrayList<>();
+                solutions.add(new ListedSolution(line.substring(SOLUTION_HEADER.length()), moves));
+            } else if ((matcher = UNSOLVABLE_HEADER.matcher(line)).matches()) {
+                moves = null;
+                solutions.add(new ListedSolution(matcher.group(1), List.of()));
+            } else if (moves != null && (matcher = MOVE_LINE.matcher(line)).matches()) {
+                // The number is the index of the run's first move, which catches lost or repeated lines
+                if (Integer.parseInt(matcher.group(1)) != moves.size() + 1)
+                    throw new IOException("%s:%d: expected move %d".formatted(file, lineNumber, moves.size() + 1));
+                int repeat = (matcher.group(3) != null) ? Integer.parseInt(matcher.group(3)) : 1;
+                for (int i = 0; i < repeat; ++i)
+                    moves.add(matcher.group(2));
+            } else if (!line.isBlank()) {
+                throw new IOException("%s:%d: not part of a solution: '%s'".formatted(file, lineNumber, line));
+            }
+        }
+        return solutions;
+    }
+
+    /**
+     * Replays every solution listed in a file against its level, several levels at a time
+     * @param file The solutions file
+     * @param jobs How many levels to replay at the same time
+     * @param out Where failures and the summary are printed
+     * @return How many listed solutions failed, including levels that couldn't be loaded
+     * @throws IOException If the solutions file can't be read
+     */
+    public static int verifyFile(Path file, int jobs, PrintStream out) throws IOException {
+        long startTime = System.nanoTime();
+        List<ListedSolution> solutions = readSolutions(file);
+        Path directory = file.toAbsolutePath().getParent();
+
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<String>> outcomes = new ArrayList<>();
+            for (ListedSolution solution : solutions)
+                outcomes.add(executor.submit(() -> verify(solution, directory)));
+
+            int failed = 0, skipped = 0, moves = 0;
+            for (int i = 0; i < solutions.size(); ++i) {
+                String failure;
+                try {
+                    failure = outcomes.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return failed;
+                } catch (ExecutionException e) {
+                    failure = e.getCause().toString();
+                }
+                moves += solutions.get(i).moves().size();
+                if (solutions.get(i).moves().isEmpty()) {
+                    ++skipped;
+                } else if (failure != null) {
+                    ++failed;
+                    out.printf("FAILED %s: %s\n", solutions.get(i).name(), failure);
+                }
+            }
+            out.printf("Verified %d solutions (%d moves) in %.2f ms: %d passed, %d failed, %d listed as unsolvable\n",
+                    solutions.size() - skipped, moves, (System.nanoTime() - startTime) / 1e6,
+                    solutions.size() - skipped - failed, failed, skipped);
+            return failed;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return Why a listed solution is wrong, or null if it's right or there's nothing to replay
+     */
+    private static String verify(ListedSolution solution, Path directory) {
+        if (solution.moves().isEmpty())
+            return null;
+        // Names are written relative to where the solver ran, which is usually but not always next to the file
+        File levelFile = new File(solution.name());
+        if (!levelFile.isFile())
+            levelFile = directory.resolve(solution.name()).toFile();
+        Level level;
+        try {
+            level = LevelUtils.loadFromFile(levelFile.getPath(), BatchSolver.findInfoFile(levelFile));
+        } catch (IOException | LevelParserException e) {
+            return "can't load the level: " + e.getMessage();
+        }
+        Result result = replay(level, solution.moves());
+        if (result.solved())
+            return null;
+        if (result.failedMove() != 0)
+            return "move %d of %d: %s".formatted(result.failedMove(), result.moveCount(), result.reason());
+        return result.reason();
+    }
+}
@@ -0,0 +1,71 @@
+package com.superhelix;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on a single solve, and how to report on it while it runs. Start from UNLIMITED and narrow it down with the
+ * with methods.
+ * @param timeLimitNanos How long the search may run, counted from when it starts
+ * @param maxExpanded How many states may be expanded
+ * @param maxMemoryBytes Roughly how many bytes the search's visited states and queue may take up
+ * @param cancellation A token that stops the search once it's cancelled, or null
+ * @param progress Called every progressIntervalNanos while the search runs, or null
+ * @param progressIntervalNanos How often to call progress
+ */
+public record SolveBudget(long timeLimitNanos, long maxExpanded, long maxMemoryBytes, CancellationToken cancellation,
+                          ProgressListener progress, long progressIntervalNanos) {
+    public static final SolveBudget UNLIMITED = new SolveBudget(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, null,
+            null, Long.MAX_VALUE);
+
+    /// How many expansions pass between checks of the clock and the memory estimate
+    static final int CHECK_INTERVAL = 256;
+
+    /// Receives updates on a long solve
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param depth How many moves deep the search has got
+         * @param frontierSize How many states are waiting to be expanded
+         * @param expanded How many states have been expanded so far
+         */
+        void onProgress(int depth, long frontierSize, long expanded);
+    }
+
+    public SolveBudget withTimeLimit(long duration, TimeUnit unit) {
+        return new SolveBudget(unit.toNanos(duration), maxExpanded, maxMemoryBytes, cancellation, progress,
+                progressIntervalNanos);
+    }
+
+    public SolveBudget withMaxExpanded(long states) {
+        return new SolveBudget(timeLimitNanos, states, maxMemoryBytes, cancellation, progress, progressIntervalNanos);
+    }
+
+    public SolveBudget withMaxMemory(long bytes) {
+        return new SolveBudget(timeLimitNanos, maxExpanded, bytes, cancellation, progress, progressIntervalNanos);
+    }
+
+    public SolveBudget withCancellation(CancellationToken token) {
+        return new SolveBudget(timeLimitNanos, maxExpanded, maxMemoryBytes, token, progress, progressIntervalNanos);
+    }
+
+    public SolveBudget withProgress(ProgressListener listener, long interval, TimeUnit unit) {
+        return new SolveBudget(timeLimitNanos, maxExpanded, maxMemoryBytes, cancellation, listener,
+                unit.toNanos(interval));
+    }
+
+    /**
+     * Checks the limits that cost something to look at, which searches do every CHECK_INTERVAL expansions
+     * @param startTime When the search started, from System.nanoTime
+     * @param memoryBytes The search's estimated memory use
+     * @return The limit that was hit, or null to keep going
+     */
+    SolveResult.Status check(long startTime, long memoryBytes) {
+        if (cancellation != null && cancellation.isCancelled())
+            return SolveResult.Status.CANCELLED;
+        if (timeLimitNanos != Long.MAX_VALUE && System.nanoTime() - startTime > timeLimitNanos)
+            return SolveResult.Status.TIME_LIMIT;
+        if (memoryBytes > maxMemoryBytes)
+            return SolveResult.Status.MEMORY_LIMIT;
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.superhelix;
+
+import java.util.List;
+
+/**
+ * How a budgeted solve ended
+ * @param status Why the search stopped
+ * @param moves The keys to be pressed to complete the level, which is empty unless the status is SOLVED
+ */
+public record SolveResult(Status status, List<String> moves) {
+    public enum Status {
+        SOLVED,         // A minimal solution was found
+        NO_SOLUTION,    // Every reachable state was searched, so the level can't be completed
+        TIME_LIMIT,     // The budget's time limit passed first
+        NODE_LIMIT,     // The budget's expansion limit was reached first
+        MEMORY_LIMIT,   // The search's estimated memory use went over the budget
+        CANCELLED       // The budget's cancellation token was set
+    }
+
+    public boolean isSolved() { return status == Status.SOLVED; }
+
+    /** @return Whether the search stopped early, so nothing is known about whether the level can be completed */
+    public boolean isExhausted() { return status != Status.SOLVED && status != Status.NO_SOLUTION; }
+}
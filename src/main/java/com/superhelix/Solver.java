@@ -0,0 +1,200 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// Breadth-first search that keeps its buffers from one solve to the next, for workloads that solve many levels back
+/// to back. It finds the same solutions as StateGraph and fills in the same counters, but keeps the queue as parallel
+/// arrays of keys, parent indices and moves, and the visited states in an open-addressing table whose slots are
+/// stamped with the solve that filled them. Starting a solve bumps the stamp, which empties the table without
+/// touching it, so once the buffers have grown to fit the largest level a solve allocates little beyond compiling its
+/// level and the returned moves.
+///
+/// A solver isn't thread-safe. Each thread should have its own, such as the one forCurrentThread returns, and the
+/// buffers stay as large as the largest level that thread has solved.
+public class Solver {
+    private static final long EMPTY = 0L;
+    private static final ThreadLocal<Solver> PER_THREAD = ThreadLocal.withInitial(Solver::new);
+    /// A queued state's key, parent index and move, plus a visited slot with its stamp at half load
+    private static final int STATE_BYTES = Long.BYTES + Integer.BYTES + 1 + 2 * (Long.BYTES + Integer.BYTES);
+
+    // Every state reached, in the order it was reached, which is also the queue
+    private long[] keys = new long[1024];
+    private int[] parents = new int[1024];
+    private byte[] moves = new byte[1024];
+    private int count;
+
+    // The visited table, where a slot only holds a key if its stamp is the current solve's
+    private long[] slots = new long[2048];
+    private int[] stamps = new int[2048];
+    private int stamp;
+    private int visitedSize;
+    private boolean containsEmpty;
+
+    private final long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+    private final byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+
+    /** @return The calling thread's solver */
+    public static Solver forCurrentThread() { return PER_THREAD.get(); }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @return The keys to be pressed to complete the level.
+     */
+    public List<String> solve(Level level) {
+        return solve(level, new SearchStats());
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @return The keys to be pressed to complete the level.
+     */
+    public List<String> solve(Level level, SearchStats stats) {
+        return solve(level, stats, SolveBudget.UNLIMITED).moves();
+    }
+
+    /**
+     * Searches for a minimal player move pattern within a budget
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public SolveResult solve(Level level, SearchStats stats, SolveBudget budget) {
+        long startTime = System.nanoTime();
+        CompiledLevel compiled = new CompiledLevel(level);
+        DeadStateAnalysis deadStates = new DeadStateAnalysis(compiled);
+        stats.setLevelAnalysis(compiled, deadStates);
+        MoveGenerator generator = new MoveGenerator(compiled, deadStates);
+
+        reset();
+        visit(compiled.getStartKey());
+        enqueue(compiled.getStartKey(), -1, (byte) 0);
+        int goalIndex = -1;
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+
+        // Layers are told apart by counting, as in StateGraph, so progress can report how deep the search is
+        int layerEnd = 1;
+        int depth = 0;
+        BudgetTracker tracker = new BudgetTracker(budget, startTime);
+
+        search:
+        for (int head = 0; head < count; ++head) {
+            SolveResult.Status limit = tracker.check(head + 1, (long) visitedSize * STATE_BYTES, depth, count - head);
+            if (limit != null) {
+                status = limit;
+                break;
+            }
+            if (head == layerEnd) {
+                ++depth;
+                layerEnd = count;
+            }
+
+            int childCount = generator.expand(keys[head], childKeys, childMoves);
+            stats.addExpanded();
+            stats.addGenerated(childCount);
+            for (int c = 0; c < childCount; ++c) {
+                long child = childKeys[c];
+                if (!visit(child)) {
+                    stats.addDuplicates(1);
+                    continue;
+                }
+                enqueue(child, head, childMoves[c]);
+                if (compiled.isGoal(child)) {
+                    goalIndex = count - 1;
+                    status = SolveResult.Status.SOLVED;
+                    break search;
+                }
+            }
+            stats.updatePeakQueueSize(count - head - 1);
+        }
+        stats.setVisitedSize(visitedSize);
+        stats.setPrunedStates(generator.getPrunedCount());
+        stats.setSearchNanos(System.nanoTime() - startTime);
+
+        if (goalIndex == -1)
+            return new SolveResult(status, new ArrayList<>());
+        long reconstructionStart = System.nanoTime();
+        List<String> movePattern = new ArrayList<>();
+        for (int i = goalIndex; parents[i] != -1; i = parents[i])
+            movePattern.add(Move.fromOrdinal(moves[i]).description());
+        Collections.reverse(movePattern);
+        stats.setReconstructionNanos(System.nanoTime() - reconstructionStart);
+        return new SolveResult(status, movePattern);
+    }
+
+    /**
+     * Empties the queue and the visited table for a new solve
+     */
+    private void reset() {
+        count = 0;
+        visitedSize = 0;
+        containsEmpty = false;
+        if (++stamp == 0) {
+            // After four billion solves the stamps wrap around, and the old ones would look current again
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    private void enqueue(long key, int parent, byte move) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            parents = Arrays.copyOf(parents, count * 2);
+            moves = Arrays.copyOf(moves, count * 2);
+        }
+        keys[count] = key;
+        parents[count] = parent;
+        moves[count++] = move;
+    }
+
+    /**
+     * Marks a key visited
+     * @param key The key
+     * @return Whether the key was not visited before
+     */
+    private boolean visit(long key) {
+        if (key == EMPTY) {
+            if (containsEmpty)
+                return false;
+            containsEmpty = true;
+            ++visitedSize;
+            return true;
+        }
+
+        int mask = slots.length - 1;
+        int i = (int) LongHashSet.mix(key) & mask;
+        while (stamps[i] == stamp) {
+            if (slots[i] == key)
+                return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = key;
+        stamps[i] = stamp;
+        if (++visitedSize * 2 > slots.length)
+            grow();
+        return true;
+    }
+
+    /**
+     * Doubles the visited table, keeping only the current solve's keys
+     */
+    private void grow() {
+        long[] oldSlots = slots;
+        int[] oldStamps = stamps;
+        slots = new long[oldSlots.length * 2];
+        stamps = new int[oldSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int j = 0; j < oldSlots.length; ++j) {
+            if (oldStamps[j] != stamp)
+                continue;
+            int i = (int) LongHashSet.mix(oldSlots[j]) & mask;
+            while (stamps[i] == stamp)
+                i = (i + 1) & mask;
+            slots[i] = oldSlots[j];
+            stamps[i] = stamp;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.superhelix;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Solves levels over HTTP on the loopback interface, so repeated solves skip JVM startup and run on a warm JIT.
+/// - `POST /solve` takes the level's tile matrix as the body, optionally followed by a line containing only `---` and
+///   the level's info text. The response is the move list as Main prints it, or an error with status 400 for a bad
+///   level, 503 when every solver is busy, and 504 when the solve takes longer than the timeout.
+/// - `GET /stats` returns request counts, throughput and solve latencies as a JSON object.
+///
+/// At most a fixed number of solves run at once, and requests beyond that are turned away rather than queued.
+/// Parsed levels are kept in a small LRU cache keyed by the request body.
+public class SolverServer {
+    public static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private static final String INFO_SEPARATOR = "---";
+    private static final int MAX_CACHED_LEVELS = 256;
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final ExecutorService solvers;
+    private final Semaphore permits;
+    private final SearchEngine engine;
+    private final long timeoutNanos;
+    private final long startTime = System.nanoTime();
+
+    private final Map<String, Level> levels = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Level> eldest) {
+            return size() > MAX_CACHED_LEVELS;
+        }
+    };
+
+    // Guarded by this
+    private long requests, solved, unsolvable, failed, timedOut, rejected, levelCacheHits;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long latencyCount;
+
+    /**
+     * Creates a server without starting it
+     * @param port The local port to listen on, or 0 for any free port
+     * @param engine The engine to solve with
+     * @param concurrency How many levels may be solved at the same time
+     * @param timeoutSeconds How long a request may wait for its solution
+     * @throws IOException If the port can't be bound
+     */
+    public SolverServer(int port, SearchEngine engine, int concurrency, int timeoutSeconds) throws IOException {
+        this.engine = engine;
+        timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        solvers = Executors.newFixedThreadPool(concurrency);
+        permits = new Semaphore(concurrency);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    public void start() { server.start(); }
+
+    /**
+     * Stops accepting requests and waits for running solves to finish. Every request is answered once the timeout has
+     * passed, so this waits about that long at most, and then interrupts whatever is still running.
+     */
+    public void stop() {
+        // Requests that come in once the handlers are shut down are turned away
+        handlers.shutdown();
+        solvers.shutdown();
+        try {
+            if (!handlers.awaitTermination(timeoutNanos + TimeUnit.SECONDS.toNanos(1), TimeUnit.NANOSECONDS))
+                handlers.shutdownNow();
+            if (!solvers.awaitTermination(timeoutNanos, TimeUnit.NANOSECONDS))
+                solvers.shutdownNow();
+        } catch (InterruptedException e) {
+            handlers.shutdownNow();
+            solvers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "error: use POST\n");
+            return;
+        }
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        long requestStart = System.nanoTime();
+        synchronized (this) {
+            ++requests;
+        }
+
+        Level level;
+        try {
+            level = parse(body);
+        } catch (LevelParserException e) {
+            synchronized (this) {
+                ++failed;
+            }
+            respond(exchange, 400, "error: " + e.getMessage() + "\n");
+            return;
+        }
+
+        // The permit is held by the solve itself, so a solve that outlives its request still counts against the limit
+        if (!permits.tryAcquire()) {
+            synchronized (this) {
+                ++rejected;
+            }
+            respond(exchange, 503, "error: every solver is busy\n");
+            return;
+        }
+        // The solve's own time limit and the token both stop the engine, so it doesn't outlive the request
+        CancellationToken cancellation = new CancellationToken();
+        SolveBudget budget = SolveBudget.UNLIMITED.withTimeLimit(timeoutNanos, TimeUnit.NANOSECONDS)
+                .withCancellation(cancellation);
+        Future<SolveResult> future;
+        try {
+            future = solvers.submit(() -> {
+                try {
+                    return engine.solve(level, new SearchStats(), budget);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            respond(exchange, 503, "error: the server is shutting down\n");
+            return;
+        }
+
+        SolveResult result;
+        try {
+            result = future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // The engine stops at its next budget check, which for a layered engine may be the end of the layer
+            cancellation.cancel();
+            future.cancel(true);
+            result = null;
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                ++failed;
+            }
+            respond(exchange, 500, "error: " + e.getCause() + "\n");
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "error: the server is shutting down\n");
+            return;
+        }
+
+        if (result == null || result.isExhausted()) {
+            synchronized (this) {
+                ++timedOut;
+            }
+            respond(exchange, 504, "error: no solution within %d ms\n".formatted(timeoutNanos / 1_000_000));
+            return;
+        }
+
+        List<String> moves = result.moves();
+        synchronized (this) {
+            if (moves.size() > 0)
+                ++solved;
+            else
+                ++unsolvable;
+            latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = System.nanoTime() - requestStart;
+        }
+        if (moves.size() > 0)
+            respond(exchange, 200, Main.formatMovePattern(moves));
+        else
+            respond(exchange, 200, "Sorry, I can't find a solution to that. Have you rechecked the tile matrix and info file?\n");
+    }
+
+    /**
+     * Parses a request body, or takes the level from the cache if the same body was parsed before
+     */
+    private Level parse(String body) throws LevelParserException {
+        synchronized (this) {
+            Level level = levels.get(body);
+            if (level != null) {
+                ++levelCacheHits;
+                return level;
+            }
+        }
+
+        String levelText = body, infoText = null;
+        List<String> lines = body.lines().toList();
+        int separator = lines.indexOf(INFO_SEPARATOR);
+        if (separator != -1) {
+            levelText = String.join("\n", lines.subList(0, separator));
+            infoText = String.join("\n", lines.subList(separator + 1, lines.size()));
+        }
+        Level level = LevelUtils.loadFromText(levelText, infoText);
+        synchronized (this) {
+            levels.put(body, level);
+        }
+        return level;
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, statsJson() + "\n");
+    }
+
+    /**
+     * @return The request counts, the throughput over the server's lifetime, and the latency of recent solves as a
+     * single-line JSON object, with times in nanoseconds
+     */
+    public synchronized String statsJson() {
+        long uptime = System.nanoTime() - startTime;
+        int samples = (int) Math.min(latencyCount, LATENCY_SAMPLES);
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long latency : sorted)
+            total += latency;
+
+        return ("{\"uptimeNanos\":%d,\"requests\":%d,\"solved\":%d,\"unsolvable\":%d,\"failed\":%d,\"timedOut\":%d,"
+                + "\"rejected\":%d,\"cachedLevels\":%d,\"levelCacheHits\":%d,\"solvesPerSecond\":%.3f,"
+                + "\"latencyNanos\":{\"samples\":%d,\"mean\":%d,\"p50\":%d,\"p95\":%d,\"p99\":%d,\"max\":%d}}")
+                .formatted(uptime, requests, solved, unsolvable, failed, timedOut, rejected, levels.size(),
+                        levelCacheHits, (solved + unsolvable) / (uptime / 1e9), samples,
+                        (samples > 0) ? total / samples : 0, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                        percentile(sorted, 0.99), (samples > 0) ? sorted[samples - 1] : 0);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.superhelix;
+
+import java.util.*;
+
+/// Solves one level over and over while it's being edited, reusing as much of the last breadth-first search as the
+/// edits leave intact.
+/// Every move reads tiles at most PADDING cells away from the block (two cells to roll onto and one past them for the
+/// fall check), so a state whose cells are all farther than that from every edited tile has exactly the same children
+/// as before. The layers of the last search are kept, and the shallowest state near an edit decides how deep they
+/// still hold: everything up to its layer was reached only through unchanged moves, so the search resumes by expanding
+/// that layer again instead of starting over. Edits far from the start in moves therefore only cost the search beyond
+/// them.
+///
+/// States aren't pruned with DeadStateAnalysis here, since an edit anywhere can bring a dead state back to life,
+/// and edits that renumber the state keys (a different grid size, start, or set of bridges) start the search over.
+public class SolverSession {
+    private static final int MISSING = Integer.MAX_VALUE;
+
+    private final Level level;
+    /// Positions edited since the last search
+    private final List<Position> edits = new ArrayList<>();
+    /// The level the last search ran on, or null before the first one
+    private CompiledLevel compiled;
+
+    // Every state reached, in the order it was reached, which groups them into layers by moves taken
+    private long[] keys = new long[1024];
+    private int[] parents = new int[1024];
+    private byte[] moves = new byte[1024];
+    private int count;
+    private int[] layerStarts = new int[64];
+    private int layerCount;
+    /// Where every state is kept, with stale entries left behind for indices past the count or reused since
+    private LongIntHashMap indices;
+    /// The fewest moves any state with a half on each cell was reached in
+    private int[] minDepthAt;
+    /// The deepest layer the last search filled in completely
+    private int completeDepth;
+    private int goalIndex = -1;
+
+    private int resumeDepth;
+    private int reusedStates;
+
+    /**
+     * Starts a session on a copy of a level, which the session's edits then change
+     * @param level The level
+     */
+    public SolverSession(Level level) {
+        List<List<Tile>> tiles = new ArrayList<>();
+        for (List<Tile> row : level.tiles())
+            tiles.add(new ArrayList<>(row));
+        Map<Character, TileMetadata> tilesMetadata = new TreeMap<>();
+        for (TileMetadata metadata : level.tilesMetadata().values())
+            tilesMetadata.put(metadata.getId(), new TileMetadata(metadata.getId(), metadata.getSwitchAttribute(),
+                    metadata.getStartingBridgeState(), new ArrayList<>(metadata.getPositions())));
+        this.level = new Level(tiles, tilesMetadata);
+    }
+
+    /** @return The level with every edit so far */
+    public Level getLevel() { return level; }
+
+    /**
+     * Replaces a tile of the level's grid
+     * @param x The column
+     * @param y The row
+     * @param tile The new tile
+     * @throws IllegalArgumentException If the position is outside the level
+     */
+    public void setTile(int x, int y, Tile tile) {
+        int width = 0;
+        for (List<Tile> row : level.tiles())
+            width = Math.max(width, row.size());
+        if (y < 0 || y >= level.tiles().size() || x < 0 || x >= width)
+            throw new IllegalArgumentException("(%d, %d) is outside the level".formatted(x, y));
+        List<Tile> row = level.tiles().get(y);
+        while (row.size() <= x)
+            row.add(Tile.VOID);
+        row.set(x, tile);
+        edits.add(new Position(x, y));
+    }
+
+    /**
+     * Replaces what a switch does, or makes a tile group a switch or no longer one
+     * @param id The tile group's identifier
+     * @param attr The new switch attribute, or null
+     * @throws IllegalArgumentException If there is no such tile group
+     */
+    public void setSwitchAttribute(char id, SwitchAttribute attr) {
+        metadataOf(id).setSwitchAttribute(attr);
+        edits.addAll(metadataOf(id).getPositions());
+    }
+
+    /**
+     * Changes whether a tile group starts on
+     * @param id The tile group's identifier
+     * @param state Whether it starts on
+     * @throws IllegalArgumentException If there is no such tile group
+     */
+    public void setStartingBridgeState(char id, boolean state) {
+        metadataOf(id).setStartingBridgeState(state);
+        edits.addAll(metadataOf(id).getPositions());
+    }
+
+    /**
+     * Moves a tile group, such as the start ('$'), the goal ('^'), a bridge or a switch, adding it if it's new
+     * @param id The tile group's identifier
+     * @param positions Where its tiles are now
+     */
+    public void setPositions(char id, List<Position> positions) {
+        TileMetadata metadata = level.tilesMetadata().computeIfAbsent(id, TileMetadata::new);
+        edits.addAll(metadata.getPositions());
+        metadata.setPositions(new ArrayList<>(positions));
+        edits.addAll(positions);
+    }
+
+    /**
+     * Generates a minimal player move pattern for the level as it is now.
+     * @return The keys to be pressed to complete the level.
+     */
+    public List<String> solve() {
+        return solve(new SearchStats());
+    }
+
+    /**
+     * Generates a minimal player move pattern for the level as it is now.
+     * Nodes expanded and generated only count the work done by this call, while visited states counts every state
+     * the session holds, kept or new.
+     * @param stats The counters to fill in while searching
+     * @return The keys to be pressed to complete the level.
+     */
+    public List<String> solve(SearchStats stats) {
+        long startTime = System.nanoTime();
+        CompiledLevel next = new CompiledLevel(level);
+        if (compiled != null && sharesKeys(compiled, next)) {
+            resumeDepth = Math.min(completeDepth, shallowestEdited(next));
+            truncate(resumeDepth);
+        } else {
+            restart(next);
+            resumeDepth = 0;
+        }
+        compiled = next;
+        edits.clear();
+        reusedStates = count;
+
+        search(stats);
+        stats.setVisitedSize(count);
+        stats.setSearchNanos(System.nanoTime() - startTime);
+
+        long reconstructionStart = System.nanoTime();
+        List<String> movePattern = new ArrayList<>();
+        for (int i = goalIndex; i > 0; i = parents[i])
+            movePattern.add(Move.fromOrdinal(moves[i]).description());
+        Collections.reverse(movePattern);
+        stats.setReconstructionNanos(System.nanoTime() - reconstructionStart);
+        return movePattern;
+    }
+
+    /** @return The layer the last solve resumed from, which is 0 if it started over */
+    public int getResumeDepth() { return resumeDepth; }
+
+    /** @return How many states the last solve kept from the one before */
+    public int getReusedStates() { return reusedStates; }
+
+    /**
+     * Expands layers from the last one kept until the goal is reached or there's nothing left
+     */
+    private void search(SearchStats stats) {
+        MoveGenerator generator = new MoveGenerator(compiled);
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+        int depth = layerCount - 1;
+        while (layerStarts[depth] < count) {
+            int layerEnd = count;
+            addLayer(count);
+            for (int i = layerStarts[depth]; i < layerEnd; ++i) {
+                int childCount = generator.expand(keys[i], childKeys, childMoves);
+                stats.addExpanded();
+                stats.addGenerated(childCount);
+                for (int c = 0; c < childCount; ++c) {
+                    long child = childKeys[c];
+                    int index = indices.get(child);
+                    if (index != -1 && index < count && keys[index] == child) {
+                        stats.addDuplicates(1);
+                        continue;
+                    }
+                    add(child, i, childMoves[c], depth + 1);
+                    if (compiled.isGoal(child)) {
+                        goalIndex = count - 1;
+                        completeDepth = depth;
+                        return;
+                    }
+                }
+                stats.updatePeakQueueSize(count - i - 1);
+            }
+            ++depth;
+        }
+        completeDepth = depth;
+    }
+
+    /**
+     * Forgets the last search and starts again from the level's start
+     */
+    private void restart(CompiledLevel next) {
+        count = 0;
+        layerCount = 0;
+        indices = new LongIntHashMap(1024, -1);
+        minDepthAt = new int[next.getCellCount()];
+        Arrays.fill(minDepthAt, MISSING);
+        compiled = next;
+        addLayer(0);
+        add(next.getStartKey(), -1, (byte) 0, 0);
+        completeDepth = 0;
+        goalIndex = -1;
+    }
+
+    /**
+     * Drops every state more than a number of moves from the start
+     */
+    private void truncate(int depth) {
+        if (depth + 1 < layerCount)
+            count = layerStarts[depth + 1];
+        layerCount = depth + 1;
+        for (int cell = 0; cell < minDepthAt.length; ++cell)
+            if (minDepthAt[cell] > depth)
+                minDepthAt[cell] = MISSING;
+        goalIndex = -1;
+    }
+
+    /**
+     * @return The fewest moves any kept state near an edited tile was reached in, or MISSING if there is none
+     */
+    private int shallowestEdited(CompiledLevel next) {
+        int column = next.getHeight();
+        int depth = MISSING;
+        for (Position pos : edits) {
+            int cell = next.cellOf(pos);
+            for (int dx = -CompiledLevel.PADDING; dx <= CompiledLevel.PADDING; ++dx)
+                for (int dy = -CompiledLevel.PADDING; dy <= CompiledLevel.PADDING; ++dy)
+                    depth = Math.min(depth, minDepthAt[cell + dx * column + dy]);
+        }
+        return depth;
+    }
+
+    /**
+     * @return Whether every state has the same key in both levels, so that the keys of a search still apply
+     */
+    private static boolean sharesKeys(CompiledLevel before, CompiledLevel after) {
+        if (before.getWidth() != after.getWidth() || before.getHeight() != after.getHeight()
+                || before.getStartKey() != after.getStartKey() || before.getBridgeCount() != after.getBridgeCount())
+            return false;
+        for (int bit = 0; bit < before.getBridgeCount(); ++bit)
+            if (!before.getBridgeGroup(bit).equals(after.getBridgeGroup(bit)))
+                return false;
+        return true;
+    }
+
+    private void add(long key, int parent, byte move, int depth) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            parents = Arrays.copyOf(parents, count * 2);
+            moves = Arrays.copyOf(moves, count * 2);
+        }
+        keys[count] = key;
+        parents[count] = parent;
+        moves[count] = move;
+        indices.put(key, count++);
+
+        StateEncoder encoder = compiled.getEncoder();
+        int first = encoder.firstCell(key), second = encoder.secondCell(key);
+        minDepthAt[first] = Math.min(minDepthAt[first], depth);
+        minDepthAt[second] = Math.min(minDepthAt[second], depth);
+    }
+
+    private void addLayer(int start) {
+        if (layerCount == layerStarts.length)
+            layerStarts = Arrays.copyOf(layerStarts, layerCount * 2);
+        layerStarts[layerCount++] = start;
+    }
+
+    private TileMetadata metadataOf(char id) {
+        TileMetadata metadata = level.tilesMetadata().get(id);
+        if (metadata == null)
+            throw new IllegalArgumentException("There is no tile group '%c'".formatted(id));
+        return metadata;
+    }
+}
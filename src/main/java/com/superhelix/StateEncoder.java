@@ -0,0 +1,69 @@
+package com.superhelix;
+
+/// Packs a player and its bridge states into a single 64-bit key.
+/// From the least significant bit, the layout is: first cell, second cell, focus, and then the bridge mask of the
+/// CompiledLevel. Cells are numbered column by column, so comparing two cell indices orders them the same way Player
+/// sorts positions.
+public class StateEncoder {
+    private final CompiledLevel level;
+    private final int cellBits;
+    private final long cellMask;
+    private final int focusShift;
+    private final int bridgeShift;
+
+    public StateEncoder(CompiledLevel level) {
+        this.level = level;
+        cellBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(level.getCellCount() - 1));
+        cellMask = (1L << cellBits) - 1;
+        focusShift = 2 * cellBits;
+        bridgeShift = focusShift + 1;
+
+        if (bridgeShift + level.getBridgeCount() > Long.SIZE)
+            throw new IllegalArgumentException("Level has too many cells and bridges to pack into a 64-bit state key");
+    }
+
+    /**
+     * Packs cells, focus and bridge states into a key
+     * @param first The first cell, which must not come after the second
+     * @param second The second cell
+     * @param focus Which of the two cells is controlled
+     * @param bridges The bridge mask
+     * @return The packed key
+     */
+    public long encode(int first, int second, int focus, long bridges) {
+        return first | (long) second << cellBits | (long) focus << focusShift | bridges << bridgeShift;
+    }
+
+    /**
+     * Packs the player and bridge states into a key
+     * @param player The player
+     * @param bridges The bridge mask
+     * @return The packed key
+     */
+    public long encode(Player player, long bridges) {
+        return encode(level.cellOf(player.getFirst()), level.cellOf(player.getSecond()), player.getFocus(), bridges);
+    }
+
+    public int firstCell(long key) { return (int) (key & cellMask); }
+
+    public int secondCell(long key) { return (int) (key >>> cellBits & cellMask); }
+
+    public int focus(long key) { return (int) (key >>> focusShift & 1); }
+
+    public long bridges(long key) { return key >>> bridgeShift; }
+
+    /**
+     * @param key The packed key
+     * @return The key with its bridge bits cleared, leaving only the cells and focus
+     */
+    public long placement(long key) { return key & ((1L << bridgeShift) - 1); }
+
+    /**
+     * Rebuilds the player stored in a key
+     * @param key The packed key
+     * @return The player
+     */
+    public Player decodePlayer(long key) {
+        return new Player(level.positionOf(firstCell(key)), level.positionOf(secondCell(key)), focus(key));
+    }
+}
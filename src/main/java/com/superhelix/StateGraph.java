@@ -9,50 +9,125 @@ public class StateGraph {
      * @return The keys to be pressed to complete the level.
      */
     public static List<String> generateMinimalMovePattern(Level level) {
-        // visitedBy will hold a mapping from the StateNode ID to StateNode parent
-        HashSet<String> visited = new HashSet<>();
-        Queue<StateNode> workQueue = new LinkedList<>();
-
-        // Gather all the starting bridge states and use it for the first state node
-        Map<Character, Boolean> states = new TreeMap<>();
-        for (Map.Entry<Character, TileMetadata> entry : level.tilesMetadata().entrySet())
-            states.put(entry.getKey(), entry.getValue().getStartingBridgeState());
-        Position firstPlayerPos = level.tilesMetadata().get('$').getPositions().get(0);
-        Position goalPos = level.tilesMetadata().get('^').getPositions().get(0);
-        StateNode startingNode = new StateNode(new Player(firstPlayerPos, firstPlayerPos),
-                null, "", states);
-
-        workQueue.add(startingNode);
-        StateNode backtrackingNode = null;
-
-        while (!workQueue.isEmpty()) {
-            StateNode node = workQueue.remove();
-
-            // Skip if we've already visited this node (property of BFS)
-            if (visited.contains(node.getIdentifier()))
-                continue;
-            visited.add(node.getIdentifier());
-
-            // Have we reached the goal
-            if (node.getPlayer().isVertical() && node.getPlayer().getFirst().equals(goalPos)) {
-                backtrackingNode = node;
+        return generateMinimalMovePattern(level, new SearchStats());
+    }
+
+    /**
+     * Generates a minimal player move pattern from a Level.
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @return The keys to be pressed to complete the level.
+     */
+    public static List<String> generateMinimalMovePattern(Level level, SearchStats stats) {
+        return solve(level, stats, SolveBudget.UNLIMITED).moves();
+    }
+
+    /// A state's key, parent index and move in the arrays of reached states, plus its slot in the visited set
+    static final int NODE_BYTES = Long.BYTES + Integer.BYTES + 1 + 2 * Long.BYTES;
+
+    /**
+     * Searches for a minimal player move pattern within a budget
+     * @param level The level to solve
+     * @param stats The counters to fill in while searching
+     * @param budget The limits on the search
+     * @return The solution, or why there is none
+     */
+    public static SolveResult solve(Level level, SearchStats stats, SolveBudget budget) {
+        // Keys are marked visited as they're enqueued, so every state sits in the queue at most once.
+        // Since the queue is FIFO, the first time a state is enqueued is also the first time it would be dequeued.
+        long startTime = System.nanoTime();
+        CompiledLevel compiled = new CompiledLevel(level);
+        DeadStateAnalysis deadStates = new DeadStateAnalysis(compiled);
+        stats.setLevelAnalysis(compiled, deadStates);
+        MoveGenerator generator = new MoveGenerator(compiled, deadStates);
+        LongHashSet visited = new LongHashSet();
+        long[] childKeys = new long[MoveGenerator.MAX_CHILDREN];
+        byte[] childMoves = new byte[MoveGenerator.MAX_CHILDREN];
+
+        // Every state reached, in the order it was reached, which is also the queue
+        long[] keys = new long[1024];
+        int[] parents = new int[1024];
+        byte[] moves = new byte[1024];
+        int count = 0;
+
+        keys[count] = compiled.getStartKey();
+        parents[count++] = -1;
+        visited.add(compiled.getStartKey());
+        int goalIndex = -1;
+        SolveResult.Status status = SolveResult.Status.NO_SOLUTION;
+
+        // Layers are told apart by counting, so progress can report how deep the search is
+        long layerEnd = 1;
+        int depth = 0;
+        BudgetTracker tracker = new BudgetTracker(budget, startTime);
+
+        search:
+        for (int head = 0; head < count; ++head) {
+            SolveResult.Status limit = tracker.check(head + 1,
+                    visited.footprintBytes() + (long) visited.size() * NODE_BYTES, depth, count - head);
+            if (limit != null) {
+                status = limit;
                 break;
             }
+            // Every state of the layer before has been expanded, so everything enqueued so far is in this layer
+            if (head == layerEnd) {
+                ++depth;
+                layerEnd = count;
+            }
 
-            // Last thing is to add the children to the queue
-            workQueue.addAll(node.generateChildren(level));
-        }
+            int childCount = generator.expand(keys[head], childKeys, childMoves);
+            stats.addExpanded();
+            stats.addGenerated(childCount);
 
-        if (backtrackingNode == null)
-            return new ArrayList<>();
+            for (int c = 0; c < childCount; ++c) {
+                long child = childKeys[c];
+                // Skip if we've already visited this node (property of BFS)
+                if (!visited.add(child)) {
+                    stats.addDuplicates(1);
+                    continue;
+                }
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                    parents = Arrays.copyOf(parents, count * 2);
+                    moves = Arrays.copyOf(moves, count * 2);
+                }
+                keys[count] = child;
+                parents[count] = head;
+                moves[count++] = childMoves[c];
 
-        // Assume the goal was found
-        List<String> movePattern = new ArrayList<>();
-        while (backtrackingNode.getParent() != null) {
-            movePattern.add(0, backtrackingNode.getMoveDescription());
-            backtrackingNode = backtrackingNode.getParent();
+                // Have we reached the goal
+                if (compiled.isGoal(child)) {
+                    goalIndex = count - 1;
+                    status = SolveResult.Status.SOLVED;
+                    break search;
+                }
+            }
+            stats.updatePeakQueueSize(count - head - 1);
         }
+        stats.setVisitedSize(visited.size());
+        stats.setPrunedStates(generator.getPrunedCount());
+        stats.setSearchNanos(System.nanoTime() - startTime);
+
+        if (goalIndex == -1)
+            return new SolveResult(status, new ArrayList<>());
+        return new SolveResult(status, reconstructMovePattern(goalIndex, parents, moves, stats));
+    }
 
+    /**
+     * Follows a state's parents back to the start
+     * @param index The last state of the path
+     * @param parents Each state's parent index, or -1 for the start
+     * @param moves The Move ordinal that led to each state from its parent
+     * @param stats The stats to record the time taken in
+     * @return The move descriptions from the start to the state
+     */
+    static List<String> reconstructMovePattern(int index, int[] parents, byte[] moves, SearchStats stats) {
+        long startTime = System.nanoTime();
+        List<String> movePattern = new ArrayList<>();
+        for (int i = index; parents[i] != -1; i = parents[i])
+            movePattern.add(Move.fromOrdinal(moves[i]).description());
+        Collections.reverse(movePattern);
+        stats.setReconstructionNanos(System.nanoTime() - startTime);
         return movePattern;
     }
 }
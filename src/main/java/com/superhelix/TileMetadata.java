@@ -23,6 +23,8 @@ public class TileMetadata {
         id = c;
     }
 
+    public char getId() { return id; }
+
     public SwitchAttribute getSwitchAttribute() { return switchAttribute; }
 
     public boolean getStartingBridgeState() { return startingBridgeState; }